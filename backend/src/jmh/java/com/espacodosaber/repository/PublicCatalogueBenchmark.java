@@ -0,0 +1,190 @@
+package com.espacodosaber.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Public catalogue queries against 100k videos in an in-memory H2 database:
+ * the former load-everything listing with one teacher lookup per video, an
+ * OFFSET page and the keyset page served by VideoRepository. The SQL mirrors
+ * what Hibernate generates for the JPQL in VideoRepository, on the same
+ * idx_videos_public_uploaded index.
+ *
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PublicCatalogueBenchmark {
+
+    private static final int VIDEOS = 100_000;
+
+    private static final int TEACHERS = 200;
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final String SELECT_PAGE =
+            "SELECT v.id, v.title, v.description, v.thumbnail_path, t.id, t.full_name, " +
+            "v.duration, v.is_live, v.is_public, v.uploaded_at, " +
+            "v.width, v.height, v.video_codec, v.audio_codec, v.bitrate " +
+            "FROM videos v JOIN users t ON t.id = v.teacher_id WHERE v.is_public = TRUE ";
+
+    private static final String OFFSET_PAGE = SELECT_PAGE +
+            "ORDER BY v.uploaded_at DESC, v.id DESC LIMIT ? OFFSET ?";
+
+    private static final String KEYSET_PAGE = SELECT_PAGE +
+            "AND (v.uploaded_at < ? OR (v.uploaded_at = ? AND v.id < ?)) " +
+            "ORDER BY v.uploaded_at DESC, v.id DESC LIMIT ?";
+
+    // Number of rows before the requested page
+    @Param({"0", "1000", "50000"})
+    private int depth;
+
+    private Connection connection;
+    private Timestamp cursorUploadedAt;
+    private long cursorId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:catalogue-" + depth + ";DB_CLOSE_DELAY=-1");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, full_name VARCHAR(255) NOT NULL)");
+            ddl.execute("CREATE TABLE videos (id BIGINT PRIMARY KEY, title VARCHAR(255) NOT NULL, " +
+                    "description VARCHAR(2000), thumbnail_path VARCHAR(255), teacher_id BIGINT NOT NULL, " +
+                    "duration BIGINT NOT NULL, is_live BOOLEAN NOT NULL, is_public BOOLEAN NOT NULL, " +
+                    "uploaded_at TIMESTAMP NOT NULL, width INT, height INT, video_codec VARCHAR(32), " +
+                    "audio_codec VARCHAR(32), bitrate BIGINT)");
+            ddl.execute("CREATE INDEX idx_videos_public_uploaded ON videos (is_public, uploaded_at, id)");
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO users VALUES (?, ?)")) {
+            for (long id = 1; id <= TEACHERS; id++) {
+                insert.setLong(1, id);
+                insert.setString(2, "Professor " + id);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO videos VALUES (?, ?, ?, ?, ?, ?, FALSE, ?, ?, 1280, 720, 'avc1.64001f', 'mp4a.40.2', 2500000)")) {
+            for (long id = 1; id <= VIDEOS; id++) {
+                insert.setLong(1, id);
+                insert.setString(2, "Aula " + id);
+                insert.setString(3, "Descricao da aula " + id);
+                insert.setString(4, "previews/" + id + "/poster.jpg");
+                insert.setLong(5, id % TEACHERS + 1);
+                insert.setLong(6, 600);
+                // one in ten videos is private; a few share an upload time
+                insert.setBoolean(7, id % 10 != 0);
+                insert.setTimestamp(8, Timestamp.valueOf(start.plusMinutes(id / 3)));
+                insert.addBatch();
+                if (id % 1000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement analyze = connection.createStatement()) {
+            analyze.execute("ANALYZE");
+        }
+
+        // cursor a client holds after paging down to depth, i.e. the last row of the previous page
+        if (depth > 0) {
+            try (PreparedStatement last = connection.prepareStatement(OFFSET_PAGE)) {
+                last.setInt(1, 1);
+                last.setInt(2, depth - 1);
+                try (ResultSet rs = last.executeQuery()) {
+                    rs.next();
+                    cursorId = rs.getLong(1);
+                    cursorUploadedAt = rs.getTimestamp(10);
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement drop = connection.createStatement()) {
+            drop.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    /**
+     * Former behaviour: findByIsPublicTrue loaded every public video and
+     * convertToResponse initialised the lazy teacher, one SELECT per video.
+     * Independent of depth.
+     */
+    @Benchmark
+    public void loadAllWithTeacherPerVideo(Blackhole blackhole) throws SQLException {
+        List<long[]> videos = new ArrayList<>();
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id, teacher_id FROM videos WHERE is_public = TRUE")) {
+            while (rs.next()) {
+                videos.add(new long[]{rs.getLong(1), rs.getLong(2)});
+            }
+        }
+        try (PreparedStatement teacher = connection.prepareStatement("SELECT id, full_name FROM users WHERE id = ?")) {
+            for (long[] video : videos) {
+                teacher.setLong(1, video[1]);
+                try (ResultSet rs = teacher.executeQuery()) {
+                    rs.next();
+                    blackhole.consume(rs.getString(2));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void offsetPage(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement page = connection.prepareStatement(OFFSET_PAGE)) {
+            page.setInt(1, PAGE_SIZE + 1);
+            page.setInt(2, depth);
+            consume(page, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void keysetPage(Blackhole blackhole) throws SQLException {
+        if (depth == 0) {
+            try (PreparedStatement page = connection.prepareStatement(OFFSET_PAGE)) {
+                page.setInt(1, PAGE_SIZE + 1);
+                page.setInt(2, 0);
+                consume(page, blackhole);
+            }
+            return;
+        }
+        try (PreparedStatement page = connection.prepareStatement(KEYSET_PAGE)) {
+            page.setTimestamp(1, cursorUploadedAt);
+            page.setTimestamp(2, cursorUploadedAt);
+            page.setLong(3, cursorId);
+            page.setInt(4, PAGE_SIZE + 1);
+            consume(page, blackhole);
+        }
+    }
+
+    private static void consume(PreparedStatement page, Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = page.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getLong(1));
+                blackhole.consume(rs.getString(6));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.espacodosaber.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation throughput: the previous per-call key derivation and
+ * double parse against JwtTokenProvider's shared key and parser.
+ *
+ * Run with ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+
+    private JwtTokenProvider provider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(provider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(provider, "activeKeyId", "primary");
+        ReflectionTestUtils.setField(provider, "previousKeys", "");
+        ReflectionTestUtils.setField(provider, "jwtExpirationMs", 3_600_000L);
+        provider.init();
+
+        token = Jwts.builder()
+                .header().keyId("primary").and()
+                .subject("aluno")
+                .issuedAt(new Date())
+                .expiration(new Date(System.currentTimeMillis() + 3_600_000L))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    /**
+     * Former behaviour: validateToken and getUsernameFromToken each derived
+     * the key and built a parser, parsing the token twice per request.
+     */
+    @Benchmark
+    public String perCallKeyAndDoubleParse() {
+        SecretKey validateKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Jwts.parser().verifyWith(validateKey).build().parseSignedClaims(token);
+        SecretKey extractKey = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser().verifyWith(extractKey).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    @Benchmark
+    public String sharedParserSingleParse() {
+        Claims claims = provider.parseAndValidate(token);
+        return claims.getSubject();
+    }
+}
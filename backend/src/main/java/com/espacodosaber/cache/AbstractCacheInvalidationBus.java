@@ -0,0 +1,68 @@
+package com.espacodosaber.cache;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Subscriber registry and after-commit publishing shared by the bus implementations.
+ */
+@Log4j2
+public abstract class AbstractCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String cache, String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(cache, key);
+                }
+            });
+        } else {
+            dispatch(cache, key);
+        }
+    }
+
+    @Override
+    public void subscribe(String cache, Consumer<String> handler) {
+        subscribers.computeIfAbsent(cache, name -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    private void dispatch(String cache, String key) {
+        deliverLocally(cache, key);
+        sendToPeers(cache, key);
+    }
+
+    /**
+     * Sends the event to the other nodes. The local node has already applied it.
+     */
+    protected abstract void sendToPeers(String cache, String key);
+
+    protected void deliverLocally(String cache, String key) {
+        for (Consumer<String> handler : subscribers.getOrDefault(cache, List.of())) {
+            try {
+                handler.accept(key);
+            } catch (Exception e) {
+                log.warn("Cache invalidation handler failed for " + cache + "/" + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drops every subscribed cache, used when events may have been missed.
+     */
+    protected void deliverLocallyToAll() {
+        for (String cache : subscribers.keySet()) {
+            deliverLocally(cache, ALL);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.espacodosaber.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts cache invalidations to every backend node.
+ *
+ * Events are (cache, key) pairs; key {@link #ALL} means "drop everything".
+ * Published events are delivered to local subscribers and, depending on the
+ * implementation (cache.invalidation.type), to the other replicas. When
+ * published inside a transaction, delivery happens after commit.
+ */
+public interface CacheInvalidationBus {
+
+    String ALL = "*";
+
+    String PRINCIPALS = "principals";
+    String USER_CARDS = "user-cards";
+    String TOKENS = "tokens";
+    String VIDEOS = "videos";
+    String PUBLIC_PAGES = "public-pages";
+
+    void publish(String cache, String key);
+
+    void subscribe(String cache, Consumer<String> handler);
+}
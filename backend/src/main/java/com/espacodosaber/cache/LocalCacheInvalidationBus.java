@@ -0,0 +1,17 @@
+package com.espacodosaber.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-JVM bus for single-node deployments: events only reach local caches.
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.type", havingValue = "local", matchIfMissing = true)
+public class LocalCacheInvalidationBus extends AbstractCacheInvalidationBus {
+
+    @Override
+    protected void sendToPeers(String cache, String key) {
+        // single node, nothing to send
+    }
+}
@@ -0,0 +1,117 @@
+package com.espacodosaber.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Multi-node bus over Postgres LISTEN/NOTIFY.
+ *
+ * Events are sent with pg_notify as "origin|cache|key" and received by a
+ * listener thread holding one dedicated connection. Events from this node are
+ * skipped on receipt since they were applied locally when published. After a
+ * (re)connect all local caches are dropped, as notifications sent while the
+ * listener was down are lost.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.type", havingValue = "postgres")
+public class PostgresCacheInvalidationBus extends AbstractCacheInvalidationBus {
+
+    private static final String CHANNEL = "cache_invalidation";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${cache.invalidation.poll-timeout-ms:1000}")
+    private int pollTimeoutMs;
+
+    @Value("${cache.invalidation.reconnect-delay-ms:5000}")
+    private long reconnectDelayMs;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile boolean running = true;
+    private Thread listener;
+
+    @PostConstruct
+    public void start() {
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        listener.join(pollTimeoutMs * 2L);
+    }
+
+    @Override
+    protected void sendToPeers(String cache, String key) {
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, nodeId + "|" + cache + "|" + key);
+        } catch (Exception e) {
+            log.error("Failed to publish cache invalidation " + cache + "/" + key + ": " + e.getMessage());
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                deliverLocallyToAll();
+                log.info("Listening for cache invalidations on " + CHANNEL);
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMs);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener disconnected: " + e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelayMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        deliverLocally(parts[1], parts[2]);
+    }
+}
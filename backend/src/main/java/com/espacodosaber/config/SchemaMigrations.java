@@ -0,0 +1,108 @@
+package com.espacodosaber.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Schema changes that ddl-auto=update cannot make on its own, such as
+ * partial indexes or constraints over tables that hold duplicates. Runs after the JPA schema update has created the tables
+ * and before the schedulers start; every statement is idempotent, so it
+ * simply runs again on each startup. A failed step is logged and retried on
+ * the next start.
+ */
+@Log4j2
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrations {
+
+    // Queued duplicates of an active job, left by the old NOT EXISTS race
+    private static final String DEDUPE_ACTIVE_JOBS =
+            "DELETE FROM processing_jobs p USING processing_jobs q " +
+            "WHERE p.type = q.type AND p.video_id = q.video_id AND p.id <> q.id " +
+            "AND p.status = 'QUEUED' AND (q.status = 'RUNNING' OR (q.status = 'QUEUED' AND q.id < p.id))";
+
+    private static final String ACTIVE_JOB_INDEX =
+            "CREATE UNIQUE INDEX IF NOT EXISTS uk_processing_jobs_active " +
+            "ON processing_jobs (type, video_id) WHERE status IN ('QUEUED', 'RUNNING')";
+
+    private static final String VIDEO_ACCESS_CONSTRAINT = "uk_video_access_video_student";
+
+    // Folds duplicate (video, student) rows into the newest one, keeping the furthest progress
+    private static final String MERGE_VIDEO_ACCESS_DUPLICATES =
+            "UPDATE video_access k SET access_time = d.access_time, " +
+            "watched_duration = d.watched_duration, completed = d.completed " +
+            "FROM (SELECT MAX(id) AS id, MAX(access_time) AS access_time, " +
+            "MAX(watched_duration) AS watched_duration, BOOL_OR(completed) AS completed " +
+            "FROM video_access GROUP BY video_id, student_id HAVING COUNT(*) > 1) d " +
+            "WHERE k.id = d.id";
+
+    private static final String DELETE_VIDEO_ACCESS_DUPLICATES =
+            "DELETE FROM video_access a USING video_access b " +
+            "WHERE a.video_id = b.video_id AND a.student_id = b.student_id AND a.id < b.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void migrate() throws Exception {
+        boolean postgres;
+        try (Connection connection = dataSource.getConnection()) {
+            postgres = !"H2".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        }
+        if (postgres) {
+            // At most one queued or running job per (type, video), see ProcessingJobQueue.enqueue
+            run("processing_jobs active job index", DEDUPE_ACTIVE_JOBS, ACTIVE_JOB_INDEX);
+            migrateVideoAccess();
+        }
+    }
+
+    /**
+     * The video_access upsert needs the unique (video_id, student_id)
+     * constraint, which ddl-auto cannot add while duplicates exist.
+     */
+    private void migrateVideoAccess() {
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = ?", Integer.class, VIDEO_ACCESS_CONSTRAINT);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                // No new duplicates between the cleanup and the constraint
+                jdbcTemplate.execute("LOCK TABLE video_access IN SHARE ROW EXCLUSIVE MODE");
+                jdbcTemplate.update(MERGE_VIDEO_ACCESS_DUPLICATES);
+                int removed = jdbcTemplate.update(DELETE_VIDEO_ACCESS_DUPLICATES);
+                jdbcTemplate.execute("ALTER TABLE video_access ADD CONSTRAINT " + VIDEO_ACCESS_CONSTRAINT
+                        + " UNIQUE (video_id, student_id)");
+                log.info("Added " + VIDEO_ACCESS_CONSTRAINT + " after removing " + removed + " duplicate rows");
+            });
+        } catch (DataAccessException e) {
+            log.error("Schema migration 'video_access unique constraint' failed: " + e.getMessage());
+        }
+    }
+
+    private void run(String name, String... statements) {
+        try {
+            for (String statement : statements) {
+                jdbcTemplate.execute(statement);
+            }
+        } catch (DataAccessException e) {
+            log.error("Schema migration '" + name + "' failed: " + e.getMessage());
+        }
+    }
+}
@@ -71,8 +71,13 @@ public class SecurityConfig {
     public SecurityFilterChain publicFilterChain(HttpSecurity http) throws Exception {
         String[] publicRoutes = {
                 "/api/auth/**",
+                "/actuator/health",
                 "/api/videos/public",
-                "/api/videos/stream/{id}"
+                "/api/videos/stream/{id}",
+                "/api/videos/{id}/hls/**",
+                "/api/videos/{id}/thumbnail",
+                "/api/videos/{id}/previews.vtt",
+                "/api/videos/{id}/previews/**"
         };
         http.securityMatcher(publicRoutes)
             .csrf(csrf -> csrf.disable())
@@ -81,13 +86,34 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
                     .anyRequest().permitAll()
             );
+        // A bearer token is optional here; when sent, it identifies the viewer of a private video
+        http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
+    public SecurityFilterChain authenticatedFilterChain(HttpSecurity http) throws Exception {
+        String[] authenticatedRoutes = {
+                "/api/videos/{id}/progress"
+        };
+        http.securityMatcher(authenticatedRoutes)
+                .csrf(csrf -> csrf.disable())
+                .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth
+                        .anyRequest().authenticated()
+                );
+
+        http.authenticationProvider(authenticationProvider());
+        http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
 
     @Bean
     @Order(3)
     public SecurityFilterChain filterChainAdmin(HttpSecurity http) throws Exception {
-        http.securityMatcher("/api/admin/**")
+        http.securityMatcher("/api/admin/**", "/actuator/**")
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
@@ -107,6 +133,8 @@ public class SecurityConfig {
         String[] teacherRoutes = {
                 "/api/teacher/**",                
                 "/api/videos/upload",
+                "/api/videos/uploads",
+                "/api/videos/uploads/**",
                 "/api/videos/stream",
                 "/api/videos/stream/{id}"
         };
@@ -129,6 +157,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList(allowedOrigins.split(",")));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("Accept-Ranges", "Content-Range", "Content-Length", "ETag", "X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -33,6 +33,9 @@ public class AuthController {
     @Autowired
     private KeycloakTokenProvider keycloakTokenProvider;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
     /**
      * Authenticate user with Keycloak and return the access token directly
      * 
@@ -145,4 +148,23 @@ public class AuthController {
                 .body(errorResponse);
         }
     }
+
+    /**
+     * OIDC back-channel logout endpoint, called by Keycloak when a session ends
+     * 
+     * Keycloak posts the logout token as the "logout_token" form parameter.
+     * Once the logout token is verified, access tokens of that session are
+     * revoked; an invalid logout token is answered with 400 as the spec requires.
+     */
+    @PostMapping(value = "/backchannel-logout", consumes = "application/x-www-form-urlencoded")
+    public ResponseEntity<Void> backchannelLogout(@RequestParam("logout_token") String logoutToken) {
+        log.info("Back-channel logout received");
+        try {
+            verifiedTokenCache.invalidateForLogout(logoutToken);
+        } catch (RuntimeException e) {
+            log.warn("Rejected back-channel logout: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().build();
+    }
 }
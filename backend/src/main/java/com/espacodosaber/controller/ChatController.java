@@ -1,53 +1,128 @@
 package com.espacodosaber.controller;
 
 import com.espacodosaber.dto.ChatMessageRequest;
+import com.espacodosaber.dto.ChatMessageView;
+import com.espacodosaber.dto.ChatPage;
 import com.espacodosaber.model.ChatMessage;
+import com.espacodosaber.security.UserDetailsServiceImpl;
+import com.espacodosaber.service.ChatMessageRouter;
 import com.espacodosaber.service.ChatService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.handler.annotation.SendTo;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class ChatController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private ChatMessageRouter chatMessageRouter;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    /**
+     * Queues the message for persistence and routes it to the receiver's queue
+     * or the video room instead of broadcasting to every connected client.
+     */
     @MessageMapping("/chat.send")
-    @SendTo("/topic/messages")
-    public ChatMessage sendMessage(ChatMessageRequest request, Authentication authentication) {
-        return chatService.sendMessage(
-                authentication.getName(),
+    public void sendMessage(ChatMessageRequest request, Authentication authentication) {
+        ChatMessage saved = chatService.sendMessage(
+                userDetailsService.loadPrincipal(authentication.getName()),
                 request.getReceiverId(),
                 request.getMessage(),
                 request.getVideoId()
         );
+        chatMessageRouter.route(saved, chatService.toView(saved));
     }
 
+    /**
+     * Conversation history, newest first. Pass the X-Next-Cursor response
+     * header back as "before" to load older messages.
+     */
     @GetMapping("/api/chat/conversation/{userId}")
     @ResponseBody
-    public ResponseEntity<List<ChatMessage>> getConversation(
+    public ResponseEntity<List<ChatMessageView>> getConversation(
             @PathVariable Long userId,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
             Authentication authentication) {
-        return ResponseEntity.ok(chatService.getConversation(authentication.getName(), userId));
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        Long currentUserId = userDetailsService.loadPrincipal(authentication.getName()).getId();
+
+        ChatPage page;
+        try {
+            page = chatService.getConversation(currentUserId, userId, before, limit);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     @GetMapping("/api/chat/unread")
     @ResponseBody
-    public ResponseEntity<List<ChatMessage>> getUnreadMessages(Authentication authentication) {
-        return ResponseEntity.ok(chatService.getUnreadMessages(authentication.getName()));
+    public ResponseEntity<List<ChatMessageView>> getUnreadMessages(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        Long userId = userDetailsService.loadPrincipal(authentication.getName()).getId();
+        return ResponseEntity.ok(chatService.getUnreadMessages(userId));
+    }
+
+    /**
+     * Unread badge count, served from the in-memory counters.
+     */
+    @GetMapping("/api/chat/unread/count")
+    @ResponseBody
+    public ResponseEntity<Map<String, Long>> getUnreadCount(Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        Long userId = userDetailsService.loadPrincipal(authentication.getName()).getId();
+        return ResponseEntity.ok(Map.of("count", chatService.getUnreadCount(userId)));
     }
 
     @PutMapping("/api/chat/{messageId}/read")
     @ResponseBody
-    public ResponseEntity<Void> markAsRead(@PathVariable Long messageId) {
-        chatService.markAsRead(messageId);
+    public ResponseEntity<Void> markAsRead(@PathVariable Long messageId, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        chatService.markAsRead(userDetailsService.loadPrincipal(authentication.getName()).getId(), messageId);
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Marks every message received from userId up to and including upTo as read.
+     */
+    @PutMapping("/api/chat/conversation/{userId}/read")
+    @ResponseBody
+    public ResponseEntity<Map<String, Integer>> markConversationRead(
+            @PathVariable Long userId,
+            @RequestParam("upTo") Long upTo,
+            Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        Long currentUserId = userDetailsService.loadPrincipal(authentication.getName()).getId();
+        return ResponseEntity.ok(Map.of("updated", chatService.markConversationRead(currentUserId, userId, upTo)));
+    }
 }
@@ -1,50 +1,88 @@
 package com.espacodosaber.controller;
 
+import com.espacodosaber.dto.VideoPage;
 import com.espacodosaber.dto.VideoRequest;
 import com.espacodosaber.dto.VideoResponse;
 import com.espacodosaber.model.Video;
 import com.espacodosaber.repository.VideoRepository;
-import com.espacodosaber.security.KeycloakTokenProvider;
+import com.espacodosaber.security.UserDetailsServiceImpl;
+import com.espacodosaber.security.VideoAccessPolicy;
+import com.espacodosaber.security.VerifiedTokenCache;
+import com.espacodosaber.service.PresignedUrlService;
+import com.espacodosaber.service.VideoAccessTracker;
+import com.espacodosaber.service.VideoCatalogueCache;
 import com.espacodosaber.service.VideoService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.espacodosaber.service.VideoStreamService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/videos")
 public class VideoController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     @Autowired
     private VideoService videoService;
 
     @Autowired
     private VideoRepository videoRepository;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private VideoStreamService videoStreamService;
+
+    @Autowired
+    private PresignedUrlService presignedUrlService;
+
+    @Autowired
+    private VideoAccessTracker videoAccessTracker;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private VideoAccessPolicy videoAccessPolicy;
+
+    @Autowired
+    private VideoCatalogueCache videoCatalogueCache;
+
+    @Value("${catalogue.http-max-age-seconds:30}")
+    private long catalogueMaxAgeSeconds;
+
+    @Value("${streaming.mode:proxy}")
+    private String streamingMode;
+
     private String getTokenFromHeader(String authHeader) {
         if (authHeader != null && authHeader.startsWith("Bearer ") ) {
             String token = authHeader.substring(7);
             try{ 
-                JsonNode userInfo = new KeycloakTokenProvider().getUserInfoFromKeycloak(token);
-                return userInfo.get("preferred_username").asText();
+                return verifiedTokenCache.verify(token).username();
             } catch (Exception e ){
                 return null;
             }
@@ -71,9 +109,35 @@ public class VideoController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Public catalogue, newest first, keyset paginated and served from the
+     * catalogue cache with an ETag (If-None-Match answers 304).
+     * The body stays a plain array; the cursor of the next page (if any) is
+     * returned in the X-Next-Cursor header and passed back as ?after=.
+     */
     @GetMapping("/public")
-    public ResponseEntity<List<VideoResponse>> getPublicVideos() {
-        return ResponseEntity.ok(videoService.getAllPublicVideos());
+    public ResponseEntity<List<VideoResponse>> getPublicVideos(
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            WebRequest webRequest) {
+        VideoCatalogueCache.Cached<VideoPage> page;
+        try {
+            page = videoCatalogueCache.getPublicPage(after, limit);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (webRequest.checkNotModified(page.etag())) {
+            return null;
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(page.etag())
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(catalogueMaxAgeSeconds)).cachePublic());
+        if (page.value().nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.value().nextCursor());
+        }
+        return response.body(page.value().items());
     }
 
     @GetMapping("/my-videos")
@@ -88,37 +152,88 @@ public class VideoController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<VideoResponse> getVideo(@PathVariable Long id) {
-        return ResponseEntity.ok(videoService.getVideoById(id));
+    public ResponseEntity<VideoResponse> getVideo(@PathVariable Long id, WebRequest webRequest) {
+        VideoCatalogueCache.Cached<VideoResponse> video = videoCatalogueCache.getVideo(id);
+        if (webRequest.checkNotModified(video.etag())) {
+            return null;
+        }
+
+        CacheControl cacheControl = Boolean.TRUE.equals(video.value().getIsPublic())
+                ? CacheControl.maxAge(Duration.ofSeconds(catalogueMaxAgeSeconds)).cachePublic()
+                : CacheControl.noCache().cachePrivate();
+        return ResponseEntity.ok()
+                .eTag(video.etag())
+                .cacheControl(cacheControl)
+                .body(video.value());
     }
 
+    private String userTier(Authentication authentication) {
+        if (authentication == null || authentication.getAuthorities().isEmpty()) {
+            return "ANONYMOUS";
+        }
+        return authentication.getAuthorities().iterator().next().getAuthority();
+    }
+
+    /**
+     * Streams a video with HTTP range support (206 Partial Content, If-Range,
+     * ETag/Last-Modified conditional requests) so players can seek without
+     * re-downloading from byte zero.
+     * 
+     * With streaming.mode=redirect and a storage backend that can presign,
+     * the request is answered with a 302 to a short-lived object URL instead.
+     * Private videos need a signed-in viewer (401) who may watch them (403).
+     */
     @GetMapping("/stream/{id}")
-    public ResponseEntity<Resource> streamVideo(@PathVariable Long id, Authentication authentication) {
+    public void streamVideo(@PathVariable Long id,
+                            Authentication authentication,
+                            HttpServletRequest request,
+                            HttpServletResponse response) {
         try {
-            Video video = videoRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Video not found"));
+            Optional<Video> found = videoRepository.findById(id);
+            if (found.isEmpty()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            Video video = found.get();
 
-            if (authentication != null) {
-                videoService.trackVideoAccess(id, authentication.getName());
+            VideoAccessPolicy.Decision access = videoAccessPolicy.check(video, authentication);
+            if (access != VideoAccessPolicy.Decision.ALLOWED) {
+                response.setStatus(access.status());
+                return;
             }
 
-            File file = new File(video.getFilePath());
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
+            if (authentication != null) {
+                videoAccessTracker.record(id, userDetailsService.resolveUserId(authentication));
             }
 
-            Resource resource = new FileSystemResource(file);
-            String contentType = Files.probeContentType(file.toPath());
-            if (contentType == null) {
-                contentType = "application/octet-stream";
+            if ("redirect".equalsIgnoreCase(streamingMode)) {
+                Optional<PresignedUrlService.PresignedUrl> presigned = presignedUrlService.urlFor(
+                        video.getId(), video.getFilePath(), userTier(authentication));
+                if (presigned.isPresent()) {
+                    // Bytes are served by the object store; the backend only authorizes
+                    long maxAge = presigned.get().reusableForSeconds(presignedUrlService.refreshMarginSeconds());
+                    response.setStatus(HttpStatus.FOUND.value());
+                    response.setHeader(HttpHeaders.LOCATION, presigned.get().url());
+                    response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=" + maxAge);
+                    return;
+                }
             }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + file.getName() + "\"")
-                    .body(resource);
+            String contentType = video.getContentType() != null
+                    ? video.getContentType()
+                    : MediaTypeFactory.getMediaType(video.getFilePath())
+                            .map(MediaType::toString)
+                            .orElse("application/octet-stream");
+
+            if (!Boolean.TRUE.equals(video.getIsPublic())) {
+                // keep private videos out of shared caches
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "private");
+            }
+            videoStreamService.stream(video.getFilePath(), contentType, request, response);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 }
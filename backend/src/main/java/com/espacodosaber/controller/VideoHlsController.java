@@ -0,0 +1,170 @@
+package com.espacodosaber.controller;
+
+import com.espacodosaber.media.HlsPlan;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.security.VideoAccessPolicy;
+import com.espacodosaber.service.HlsService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import lombok.extern.log4j.Log4j2;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * HLS delivery of a video as fMP4 segments.
+ *
+ * The master playlist is the only mutable resource and is cached briefly; it
+ * points at /hls/v/{version}/, under which the media playlist, init segment
+ * and media segments never change and are served as immutable. A request for
+ * an outdated version answers 404 so players reload the master playlist.
+ * Private videos go through the same access check as the progressive
+ * stream and are only cached privately.
+ */
+@Log4j2
+@RestController
+@RequestMapping("/api/videos/{id}/hls")
+public class VideoHlsController {
+
+    private static final MediaType PLAYLIST = MediaType.parseMediaType(HlsService.PLAYLIST_CONTENT_TYPE);
+
+    private static final MediaType SEGMENT = MediaType.parseMediaType(HlsService.SEGMENT_CONTENT_TYPE);
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private static final String PRIVATE_IMMUTABLE = "private, max-age=31536000, immutable";
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private HlsService hlsService;
+
+    @Autowired
+    private VideoAccessPolicy videoAccessPolicy;
+
+    @Value("${hls.playlist-max-age-seconds:30}")
+    private long playlistMaxAgeSeconds;
+
+    @GetMapping("/master.m3u8")
+    public ResponseEntity<String> masterPlaylist(@PathVariable Long id, Authentication authentication) {
+        Optional<Video> video = videoRepository.findById(id);
+        if (video.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        VideoAccessPolicy.Decision access = videoAccessPolicy.check(video.get(), authentication);
+        if (access != VideoAccessPolicy.Decision.ALLOWED) {
+            return ResponseEntity.status(access.status()).build();
+        }
+        CacheControl cacheControl = Boolean.TRUE.equals(video.get().getIsPublic())
+                ? CacheControl.maxAge(Duration.ofSeconds(playlistMaxAgeSeconds)).cachePublic()
+                : CacheControl.noCache().cachePrivate();
+        return ResponseEntity.ok()
+                .contentType(PLAYLIST)
+                .cacheControl(cacheControl)
+                .body(hlsService.masterPlaylist(video.get()));
+    }
+
+    @GetMapping("/v/{version}/index.m3u8")
+    public ResponseEntity<String> mediaPlaylist(@PathVariable Long id,
+                                                @PathVariable String version,
+                                                Authentication authentication) {
+        Optional<Video> video = videoRepository.findById(id);
+        if (video.isPresent()) {
+            VideoAccessPolicy.Decision access = videoAccessPolicy.check(video.get(), authentication);
+            if (access != VideoAccessPolicy.Decision.ALLOWED) {
+                return ResponseEntity.status(access.status()).build();
+            }
+        }
+        Optional<HlsPlan> plan = video.filter(v -> isCurrent(v, version)).flatMap(this::plan);
+        if (plan.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(PLAYLIST)
+                .header(HttpHeaders.CACHE_CONTROL, immutable(video.get()))
+                .body(hlsService.mediaPlaylist(plan.get()));
+    }
+
+    @GetMapping("/v/{version}/init.mp4")
+    public ResponseEntity<byte[]> initSegment(@PathVariable Long id,
+                                              @PathVariable String version,
+                                              Authentication authentication) {
+        Optional<Video> video = videoRepository.findById(id);
+        if (video.isPresent()) {
+            VideoAccessPolicy.Decision access = videoAccessPolicy.check(video.get(), authentication);
+            if (access != VideoAccessPolicy.Decision.ALLOWED) {
+                return ResponseEntity.status(access.status()).build();
+            }
+        }
+        Optional<HlsPlan> plan = video.filter(v -> isCurrent(v, version)).flatMap(this::plan);
+        if (plan.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(SEGMENT)
+                .header(HttpHeaders.CACHE_CONTROL, immutable(video.get()))
+                .body(hlsService.initSegment(plan.get()));
+    }
+
+    @GetMapping("/v/{version}/seg-{index}.m4s")
+    public void mediaSegment(@PathVariable Long id,
+                             @PathVariable String version,
+                             @PathVariable int index,
+                             Authentication authentication,
+                             HttpServletResponse response) throws IOException {
+        Optional<Video> video = videoRepository.findById(id);
+        if (video.isPresent()) {
+            VideoAccessPolicy.Decision access = videoAccessPolicy.check(video.get(), authentication);
+            if (access != VideoAccessPolicy.Decision.ALLOWED) {
+                response.setStatus(access.status());
+                return;
+            }
+        }
+        Optional<HlsPlan> plan = video.filter(v -> isCurrent(v, version)).flatMap(this::plan);
+        if (plan.isEmpty() || index < 0 || index >= plan.get().segments.size()) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        HlsPlan.Segment segment = plan.get().segments.get(index);
+        response.setContentType(HlsService.SEGMENT_CONTENT_TYPE);
+        response.setContentLengthLong(hlsService.segmentSize(plan.get(), segment));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable(video.get()));
+        hlsService.writeSegment(video.get(), plan.get(), segment, response.getOutputStream());
+    }
+
+    private boolean isCurrent(Video video, String version) {
+        return hlsService.version(video).equals(version);
+    }
+
+    /**
+     * Versioned resources never change, but those of a private video must
+     * stay out of shared caches.
+     */
+    private static String immutable(Video video) {
+        return Boolean.TRUE.equals(video.getIsPublic()) ? IMMUTABLE : PRIVATE_IMMUTABLE;
+    }
+
+    private Optional<HlsPlan> plan(Video video) {
+        try {
+            return Optional.of(hlsService.plan(video));
+        } catch (RuntimeException e) {
+            log.warn("Video " + video.getId() + " cannot be served as HLS: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
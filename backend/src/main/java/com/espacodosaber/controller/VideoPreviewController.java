@@ -0,0 +1,95 @@
+package com.espacodosaber.controller;
+
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.security.VideoAccessPolicy;
+import com.espacodosaber.service.VideoPreviewService;
+import com.espacodosaber.service.VideoStreamService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Poster image and seek previews (WebVTT + sprite sheets) generated by the
+ * thumbnail job. They are written once per video, so they are served as
+ * immutable (privately for a private video, which also needs a viewer
+ * allowed to watch it); a video without them yet answers 404.
+ */
+@RestController
+@RequestMapping("/api/videos/{id}")
+public class VideoPreviewController {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private static final String PRIVATE_IMMUTABLE = "private, max-age=31536000, immutable";
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private VideoStreamService videoStreamService;
+
+    @Autowired
+    private VideoAccessPolicy videoAccessPolicy;
+
+    @GetMapping("/thumbnail")
+    public void thumbnail(@PathVariable Long id,
+                          Authentication authentication,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        serve(id, Video::getThumbnailPath, "image/jpeg", authentication, request, response);
+    }
+
+    @GetMapping("/previews.vtt")
+    public void previews(@PathVariable Long id,
+                         Authentication authentication,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        serve(id, Video::getPreviewsPath, "text/vtt", authentication, request, response);
+    }
+
+    @GetMapping("/previews/{sheet}.jpg")
+    public void previewSheet(@PathVariable Long id,
+                             @PathVariable int sheet,
+                             Authentication authentication,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        serve(id, video -> video.getPreviewsPath() != null
+                        ? VideoPreviewService.spriteKey(video.getPreviewsPath(), sheet)
+                        : null,
+                "image/jpeg", authentication, request, response);
+    }
+
+    private void serve(Long id, Function<Video, String> key, String contentType, Authentication authentication,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Video> video = videoRepository.findById(id);
+        if (video.isPresent()) {
+            VideoAccessPolicy.Decision access = videoAccessPolicy.check(video.get(), authentication);
+            if (access != VideoAccessPolicy.Decision.ALLOWED) {
+                response.setStatus(access.status());
+                return;
+            }
+        }
+        String storageKey = video.map(key).orElse(null);
+        if (storageKey == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                Boolean.TRUE.equals(video.get().getIsPublic()) ? IMMUTABLE : PRIVATE_IMMUTABLE);
+        videoStreamService.stream(storageKey, contentType, request, response);
+        if (response.getStatus() == HttpStatus.NOT_FOUND.value()) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+    }
+}
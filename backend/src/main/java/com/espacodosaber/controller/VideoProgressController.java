@@ -0,0 +1,78 @@
+package com.espacodosaber.controller;
+
+import com.espacodosaber.dto.WatchProgressRequest;
+import com.espacodosaber.security.UserDetailsServiceImpl;
+import com.espacodosaber.service.VideoCatalogueCache;
+import com.espacodosaber.service.WatchProgressAggregator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+/**
+ * Watch-progress heartbeats sent by players every few seconds, over REST
+ * (POST /api/videos/{id}/progress) or STOMP (/app/videos.progress).
+ * Both only update memory; persistence is write-behind.
+ */
+@Controller
+public class VideoProgressController {
+
+    @Autowired
+    private WatchProgressAggregator watchProgressAggregator;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private VideoCatalogueCache videoCatalogueCache;
+
+    @PostMapping("/api/videos/{id}/progress")
+    @ResponseBody
+    public ResponseEntity<Void> reportProgress(@PathVariable Long id,
+                                               @RequestBody WatchProgressRequest request,
+                                               Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (request.getPosition() == null || request.getPosition() < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!record(id, request, authentication)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @MessageMapping("/videos.progress")
+    public void reportProgress(WatchProgressRequest request, Principal principal) {
+        if (principal == null || request.getVideoId() == null
+                || request.getPosition() == null || request.getPosition() < 0) {
+            return;
+        }
+        record(request.getVideoId(), request, principal);
+    }
+
+    /**
+     * @return false when the video does not exist; nothing is recorded then
+     */
+    private boolean record(Long videoId, WatchProgressRequest request, Principal principal) {
+        try {
+            // served from the catalogue cache, so heartbeats stay off the database
+            videoCatalogueCache.getVideo(videoId);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        watchProgressAggregator.heartbeat(
+                videoId,
+                userDetailsService.resolveUserId(principal),
+                request.getPosition(),
+                request.getDuration(),
+                Boolean.TRUE.equals(request.getCompleted())
+        );
+        return true;
+    }
+}
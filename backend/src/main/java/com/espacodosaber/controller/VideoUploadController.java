@@ -0,0 +1,94 @@
+package com.espacodosaber.controller;
+
+import com.espacodosaber.dto.UploadSessionRequest;
+import com.espacodosaber.dto.UploadSessionResponse;
+import com.espacodosaber.dto.VideoResponse;
+import com.espacodosaber.service.ChunkedUploadService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Resumable chunked upload protocol
+ * 
+ * 1. POST   /api/videos/uploads                          - create session
+ * 2. PUT    /api/videos/uploads/{sessionId}/chunks/{n}   - upload chunk n (any order, in parallel, idempotent)
+ * 3. GET    /api/videos/uploads/{sessionId}              - session status and missing chunks
+ * 4. POST   /api/videos/uploads/{sessionId}/complete     - assemble and register the video
+ */
+@RestController
+@RequestMapping("/api/videos/uploads")
+public class VideoUploadController {
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    public ResponseEntity<?> createSession(@RequestBody UploadSessionRequest request,
+                                           Authentication authentication) {
+        try {
+            UploadSessionResponse response = chunkedUploadService.createSession(request, authentication.getName());
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e);
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e);
+        }
+    }
+
+    @PutMapping(value = "/{sessionId}/chunks/{index}", consumes = "application/octet-stream")
+    public ResponseEntity<?> uploadChunk(@PathVariable String sessionId,
+                                         @PathVariable int index,
+                                         InputStream body,
+                                         Authentication authentication) {
+        try {
+            chunkedUploadService.writeChunk(sessionId, index, body, authentication.getName());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e);
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e);
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e);
+        } catch (RuntimeException e) {
+            return error(HttpStatus.NOT_FOUND, e);
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<?> getStatus(@PathVariable String sessionId, Authentication authentication) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.getStatus(sessionId, authentication.getName()));
+        } catch (RuntimeException e) {
+            return error(HttpStatus.NOT_FOUND, e);
+        }
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<?> complete(@PathVariable String sessionId, Authentication authentication) {
+        try {
+            VideoResponse response = chunkedUploadService.complete(sessionId, authentication.getName());
+            return ResponseEntity.ok(response);
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e);
+        } catch (IOException e) {
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, e);
+        } catch (RuntimeException e) {
+            return error(HttpStatus.NOT_FOUND, e);
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> error(HttpStatus status, Exception e) {
+        return ResponseEntity.status(status).body(Map.of(
+                "error", status.getReasonPhrase(),
+                "message", String.valueOf(e.getMessage())
+        ));
+    }
+}
@@ -0,0 +1,21 @@
+package com.espacodosaber.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * Wire format of a chat message over REST and STOMP: ids, display names and
+ * epoch-millis timestamps only, never the User entities. The Snowflake id is
+ * written as a string since it does not fit in a JavaScript number.
+ */
+public record ChatMessageView(
+        @JsonSerialize(using = ToStringSerializer.class) long id,
+        long senderId,
+        String senderName,
+        Long receiverId,
+        String receiverName,
+        String message,
+        Long videoId,
+        long sentAt,
+        boolean read
+) {}
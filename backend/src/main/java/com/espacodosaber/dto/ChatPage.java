@@ -0,0 +1,8 @@
+package com.espacodosaber.dto;
+
+import java.util.List;
+
+/**
+ * One page of conversation history, newest first. nextCursor is null on the last page.
+ */
+public record ChatPage(List<ChatMessageView> items, String nextCursor) {}
@@ -0,0 +1,14 @@
+package com.espacodosaber.dto;
+
+import lombok.Data;
+
+@Data
+public class UploadSessionRequest {
+    private String title;
+    private String description;
+    private Boolean isPublic;
+    private Boolean isLive;
+    private String filename;
+    private Long totalSize;
+    private Integer chunkSize;
+}
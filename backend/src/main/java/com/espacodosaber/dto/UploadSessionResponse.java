@@ -0,0 +1,16 @@
+package com.espacodosaber.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UploadSessionResponse {
+    private String sessionId;
+    private String status;
+    private Long totalSize;
+    private Integer chunkSize;
+    private Integer totalChunks;
+    private List<Integer> missingChunks;
+    private Long videoId;
+}
@@ -0,0 +1,6 @@
+package com.espacodosaber.dto;
+
+/**
+ * Public display data of a user, as shown next to chat messages.
+ */
+public record UserCard(Long id, String username, String displayName) {}
@@ -0,0 +1,8 @@
+package com.espacodosaber.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. nextCursor is null on the last page.
+ */
+public record VideoPage(List<VideoResponse> items, String nextCursor) {}
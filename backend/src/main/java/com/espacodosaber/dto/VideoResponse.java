@@ -1,18 +1,26 @@
 package com.espacodosaber.dto;
 
-import lombok.Data;
+import lombok.Value;
 import java.time.LocalDateTime;
 
-@Data
+/**
+ * Immutable so instances can be shared through the catalogue cache.
+ */
+@Value
 public class VideoResponse {
-    private Long id;
-    private String title;
-    private String description;
-    private String thumbnailPath;
-    private Long teacherId;
-    private String teacherName;
-    private Long duration;
-    private Boolean isLive;
-    private Boolean isPublic;
-    private LocalDateTime uploadedAt;
+    Long id;
+    String title;
+    String description;
+    String thumbnailPath;
+    Long teacherId;
+    String teacherName;
+    Long duration;
+    Boolean isLive;
+    Boolean isPublic;
+    LocalDateTime uploadedAt;
+    Integer width;
+    Integer height;
+    String videoCodec;
+    String audioCodec;
+    Long bitrate;
 }
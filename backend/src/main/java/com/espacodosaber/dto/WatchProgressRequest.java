@@ -0,0 +1,11 @@
+package com.espacodosaber.dto;
+
+import lombok.Data;
+
+@Data
+public class WatchProgressRequest {
+    private Long videoId; // only used by the STOMP destination
+    private Long position; // in seconds
+    private Long duration; // in seconds, optional
+    private Boolean completed;
+}
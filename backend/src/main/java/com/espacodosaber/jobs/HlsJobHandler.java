@@ -0,0 +1,50 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.media.HlsPlan;
+import com.espacodosaber.model.ProcessingJobType;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.service.HlsService;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the HLS segment plan of a stored video ahead of the first playback,
+ * so the sample tables are read off the request path and files that cannot
+ * be segmented show up in the job table.
+ */
+@Log4j2
+@Component
+public class HlsJobHandler implements ProcessingJobHandler {
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private HlsService hlsService;
+
+    @Value("${jobs.hls.concurrency:2}")
+    private int concurrency;
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.HLS;
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public void process(Long videoId) {
+        Video video = videoRepository.findById(videoId).orElse(null);
+        if (video == null) {
+            return;
+        }
+        HlsPlan plan = hlsService.plan(video);
+        log.info("Video " + videoId + " segmented for HLS: " + plan.segments.size() + " segments");
+    }
+}
@@ -0,0 +1,45 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.model.ProcessingJobType;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.service.VideoMetadataService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads duration, resolution, codecs and bitrate of a stored video.
+ */
+@Component
+public class MetadataJobHandler implements ProcessingJobHandler {
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private VideoMetadataService videoMetadataService;
+
+    @Value("${jobs.metadata.concurrency:4}")
+    private int concurrency;
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.METADATA;
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public void process(Long videoId) {
+        Video video = videoRepository.findById(videoId).orElse(null);
+        if (video == null) {
+            return;
+        }
+        videoMetadataService.apply(video, videoMetadataService.probe(video.getFilePath()));
+        videoRepository.save(video);
+    }
+}
@@ -0,0 +1,17 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.model.ProcessingJobType;
+
+/**
+ * Runs one type of processing job. Each handler bean gets its own worker lane
+ * of concurrency() threads on every node; process() may run again for the
+ * same video after a retry or an expired lease, so it must be idempotent.
+ */
+public interface ProcessingJobHandler {
+
+    ProcessingJobType type();
+
+    int concurrency();
+
+    void process(Long videoId) throws Exception;
+}
@@ -0,0 +1,196 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.model.ProcessingJobType;
+import com.espacodosaber.model.Video;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Durable queue of video processing jobs on the processing_jobs table.
+ *
+ * Workers claim jobs with SELECT ... FOR UPDATE SKIP LOCKED, so replicas
+ * polling the same type never block on or double-claim each other's rows.
+ * A claim is a lease: the owner renews it while the job runs, and a job whose
+ * lease expired (crashed or stuck node) is requeued by any node, or failed
+ * once it has used all its attempts. Every deadline is computed by the
+ * database, so replicas with skewed clocks agree on when a lease expires.
+ */
+@Log4j2
+@Service
+public class ProcessingJobQueue {
+
+    // Lease and backoff deadlines come from the database clock, shared by every replica
+    private static final String NOW = "LOCALTIMESTAMP";
+
+    // Number times interval: valid on H2 and PostgreSQL (bigint converts to double precision there)
+    private static final String NOW_PLUS_MILLIS = "LOCALTIMESTAMP + CAST(? AS BIGINT) * INTERVAL '0.001' SECOND";
+
+    private static final String ENQUEUE =
+            "INSERT INTO processing_jobs (type, video_id, priority, status, attempts, max_attempts, run_after, created_at) " +
+            "SELECT ?, ?, ?, 'QUEUED', 0, ?, " + NOW + ", " + NOW + " " +
+            "WHERE NOT EXISTS (SELECT 1 FROM processing_jobs " +
+            "WHERE type = ? AND video_id = ? AND status IN ('QUEUED', 'RUNNING'))";
+
+    // Concurrent enqueues that both pass NOT EXISTS meet uk_processing_jobs_active (see SchemaMigrations)
+    private static final String POSTGRES_ENQUEUE = ENQUEUE + " ON CONFLICT DO NOTHING";
+
+    private static final String SELECT_CLAIMABLE =
+            "SELECT id, video_id, attempts, max_attempts FROM processing_jobs " +
+            "WHERE type = ? AND status = 'QUEUED' AND run_after <= " + NOW + " " +
+            "ORDER BY priority DESC, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM =
+            "UPDATE processing_jobs SET status = 'RUNNING', lease_owner = ?, lease_expires_at = " + NOW_PLUS_MILLIS + ", " +
+            "started_at = " + NOW + ", attempts = attempts + 1 WHERE id = ?";
+
+    private static final String RENEW =
+            "UPDATE processing_jobs SET lease_expires_at = " + NOW_PLUS_MILLIS + " " +
+            "WHERE id = ? AND lease_owner = ? AND status = 'RUNNING'";
+
+    private static final String COMPLETE =
+            "UPDATE processing_jobs SET status = 'SUCCEEDED', finished_at = " + NOW + ", lease_owner = NULL, " +
+            "lease_expires_at = NULL, last_error = NULL WHERE id = ? AND lease_owner = ?";
+
+    private static final String RETRY =
+            "UPDATE processing_jobs SET status = 'QUEUED', run_after = " + NOW_PLUS_MILLIS + ", lease_owner = NULL, " +
+            "lease_expires_at = NULL, last_error = ? WHERE id = ? AND lease_owner = ?";
+
+    private static final String FAIL =
+            "UPDATE processing_jobs SET status = 'FAILED', finished_at = " + NOW + ", lease_owner = NULL, " +
+            "lease_expires_at = NULL, last_error = ? WHERE id = ? AND lease_owner = ?";
+
+    private static final String REAP_EXPIRED =
+            "UPDATE processing_jobs SET " +
+            "status = CASE WHEN attempts >= max_attempts THEN 'FAILED' ELSE 'QUEUED' END, " +
+            "finished_at = CASE WHEN attempts >= max_attempts THEN " + NOW + " ELSE NULL END, " +
+            "run_after = " + NOW + ", lease_owner = NULL, lease_expires_at = NULL, last_error = 'Lease expired' " +
+            "WHERE status = 'RUNNING' AND lease_expires_at < " + NOW;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${jobs.priority.live:100}")
+    private int livePriority;
+
+    @Value("${jobs.priority.default:0}")
+    private int defaultPriority;
+
+    public record ClaimedJob(long id, ProcessingJobType type, long videoId, int attempts, int maxAttempts) {}
+
+    private String enqueueSql;
+
+    @PostConstruct
+    public void init() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            this.enqueueSql = "H2".equalsIgnoreCase(product) ? ENQUEUE : POSTGRES_ENQUEUE;
+        }
+    }
+
+    /**
+     * Queues a job unless the same type is already queued or running for the
+     * video.
+     *
+     * @return whether a job was added
+     */
+    public boolean enqueue(ProcessingJobType type, Long videoId, int priority) {
+        return jdbcTemplate.update(enqueueSql, type.name(), videoId, priority, maxAttempts,
+                type.name(), videoId) > 0;
+    }
+
+    /**
+     * Queues every processing step for a newly stored video; live-class
+     * recordings go ahead of regular uploads.
+     */
+    public void enqueueAll(Video video) {
+        int priority = Boolean.TRUE.equals(video.getIsLive()) ? livePriority : defaultPriority;
+        for (ProcessingJobType type : ProcessingJobType.values()) {
+            enqueue(type, video.getId(), priority);
+        }
+    }
+
+    /**
+     * Claims up to limit runnable jobs of a type, highest priority first, and
+     * leases them to owner.
+     */
+    public List<ClaimedJob> claim(ProcessingJobType type, int limit, String owner, long leaseMillis) {
+        List<ClaimedJob> claimed = transactionTemplate.execute(status -> {
+            List<ClaimedJob> jobs = jdbcTemplate.query(SELECT_CLAIMABLE,
+                    (rs, i) -> new ClaimedJob(rs.getLong("id"), type, rs.getLong("video_id"),
+                            rs.getInt("attempts") + 1, rs.getInt("max_attempts")),
+                    type.name(), limit);
+            if (jobs.isEmpty()) {
+                return jobs;
+            }
+            List<Object[]> rows = new ArrayList<>(jobs.size());
+            for (ClaimedJob job : jobs) {
+                rows.add(new Object[]{owner, leaseMillis, job.id()});
+            }
+            jdbcTemplate.batchUpdate(CLAIM, rows);
+            return jobs;
+        });
+        return claimed != null ? claimed : List.of();
+    }
+
+    /**
+     * Extends the leases of jobs still running on this node.
+     */
+    public void renew(Collection<Long> jobIds, String owner, long leaseMillis) {
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(jobIds.size());
+        for (Long id : jobIds) {
+            rows.add(new Object[]{leaseMillis, id, owner});
+        }
+        jdbcTemplate.batchUpdate(RENEW, rows);
+    }
+
+    public void complete(ClaimedJob job, String owner) {
+        jdbcTemplate.update(COMPLETE, job.id(), owner);
+    }
+
+    /**
+     * Puts a failed job back in the queue after backoffMillis, or marks it as
+     * failed when it has no attempts left.
+     */
+    public void fail(ClaimedJob job, String owner, String error, long backoffMillis) {
+        String message = error != null && error.length() > 2000 ? error.substring(0, 2000) : error;
+        if (job.attempts() >= job.maxAttempts()) {
+            jdbcTemplate.update(FAIL, message, job.id(), owner);
+            log.warn("Processing job " + job.id() + " (" + job.type() + ", video " + job.videoId()
+                    + ") failed after " + job.attempts() + " attempts: " + message);
+        } else {
+            jdbcTemplate.update(RETRY, backoffMillis, message, job.id(), owner);
+        }
+    }
+
+    /**
+     * Requeues (or fails) jobs whose lease ran out without being renewed.
+     *
+     * @return number of jobs recovered
+     */
+    public int reapExpiredLeases() {
+        return jdbcTemplate.update(REAP_EXPIRED);
+    }
+}
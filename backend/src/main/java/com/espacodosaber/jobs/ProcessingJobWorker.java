@@ -0,0 +1,151 @@
+package com.espacodosaber.jobs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the processing job queue and runs claimed jobs on this node.
+ *
+ * Every handler has its own lane: a fixed pool of handler.concurrency()
+ * threads, and the node never claims more jobs of that type than the lane
+ * has free threads, so a burst of one type cannot starve the others. Leases
+ * of running jobs are renewed on a heartbeat; failures are retried with
+ * exponential backoff up to jobs.max-attempts.
+ */
+@Log4j2
+@Component
+public class ProcessingJobWorker {
+
+    @Autowired
+    private ProcessingJobQueue queue;
+
+    @Autowired
+    private List<ProcessingJobHandler> handlers;
+
+    @Value("${jobs.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${jobs.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Value("${jobs.backoff.initial-ms:10000}")
+    private long initialBackoffMillis;
+
+    @Value("${jobs.backoff.max-ms:900000}")
+    private long maxBackoffMillis;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private record Lane(ProcessingJobHandler handler, ExecutorService pool, AtomicInteger busy) {}
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        for (ProcessingJobHandler handler : handlers) {
+            int threads = Math.max(1, handler.concurrency());
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable,
+                        "job-" + handler.type().name().toLowerCase() + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            lanes.add(new Lane(handler, pool, new AtomicInteger()));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-interval-ms:2000}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int recovered = queue.reapExpiredLeases();
+            if (recovered > 0) {
+                log.warn("Recovered " + recovered + " processing jobs with expired leases");
+            }
+            for (Lane lane : lanes) {
+                int free = lane.handler().concurrency() - lane.busy().get();
+                if (free <= 0) {
+                    continue;
+                }
+                for (ProcessingJobQueue.ClaimedJob job : queue.claim(lane.handler().type(), free, nodeId, leaseMillis)) {
+                    lane.busy().incrementAndGet();
+                    running.add(job.id());
+                    lane.pool().execute(() -> run(lane, job));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to poll processing jobs: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        try {
+            queue.renew(List.copyOf(running), nodeId, leaseMillis);
+        } catch (Exception e) {
+            log.error("Failed to renew processing job leases: " + e.getMessage());
+        }
+    }
+
+    private void run(Lane lane, ProcessingJobQueue.ClaimedJob job) {
+        try {
+            lane.handler().process(job.videoId());
+            queue.complete(job, nodeId);
+        } catch (Exception e) {
+            log.warn("Processing job " + job.id() + " (" + job.type() + ", video " + job.videoId()
+                    + ") attempt " + job.attempts() + " failed: " + e.getMessage());
+            try {
+                queue.fail(job, nodeId, e.getMessage(), backoff(job.attempts()));
+            } catch (Exception recordFailure) {
+                // the lease will expire and the job will be picked up again
+                log.error("Failed to record processing job failure: " + recordFailure.getMessage());
+            }
+        } finally {
+            running.remove(job.id());
+            lane.busy().decrementAndGet();
+        }
+    }
+
+    private long backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(initialBackoffMillis << exponent, maxBackoffMillis);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.pool().shutdown();
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.pool().awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
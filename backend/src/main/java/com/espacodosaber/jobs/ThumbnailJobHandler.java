@@ -0,0 +1,46 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.model.ProcessingJobType;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.service.VideoPreviewService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates the poster and seek-preview sprite sheets of a stored video.
+ * The number of concurrent ffmpeg processes is bounded separately by
+ * FfmpegProcessPool.
+ */
+@Component
+public class ThumbnailJobHandler implements ProcessingJobHandler {
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private VideoPreviewService videoPreviewService;
+
+    @Value("${jobs.thumbnail.concurrency:2}")
+    private int concurrency;
+
+    @Override
+    public ProcessingJobType type() {
+        return ProcessingJobType.THUMBNAIL;
+    }
+
+    @Override
+    public int concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public void process(Long videoId) throws Exception {
+        Video video = videoRepository.findById(videoId).orElse(null);
+        if (video == null || video.getThumbnailPath() != null) {
+            return;
+        }
+        videoPreviewService.generate(video);
+    }
+}
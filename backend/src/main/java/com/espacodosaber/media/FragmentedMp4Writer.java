@@ -0,0 +1,263 @@
+package com.espacodosaber.media;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes CMAF-style fragmented MP4 from a progressive file without
+ * re-encoding: an init segment (ftyp + moov with empty sample tables and
+ * mvex) and media segments (one moof with a traf per track, then an mdat
+ * holding the samples copied from the source). The init segment has no edit
+ * lists, so composition offsets are written signed (trun version 1) with each
+ * track's edit shift applied.
+ */
+public final class FragmentedMp4Writer {
+
+    private static final int SAMPLE_FLAGS_SYNC = 0x02000000;
+    private static final int SAMPLE_FLAGS_NON_SYNC = 0x01010000;
+    // data-offset, sample duration, size, flags and composition offset present
+    private static final int TRUN_FLAGS = 0x000F01;
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+
+    private FragmentedMp4Writer() {
+    }
+
+    public static byte[] initSegment(List<Mp4Track> tracks) {
+        Boxes out = new Boxes();
+        out.begin("ftyp");
+        out.fourcc("iso6").u32(0).fourcc("iso6").fourcc("cmfc").fourcc("mp41");
+        out.end();
+
+        out.begin("moov");
+        out.fullBox("mvhd", 0, 0);
+        out.u32(0).u32(0).u32(1000).u32(0);      // creation, modification, timescale, duration
+        out.u32(0x00010000).u16(0x0100).zeros(10); // rate, volume, reserved
+        out.matrix().zeros(24);
+        out.u32(tracks.stream().mapToInt(t -> t.trackId).max().orElse(0) + 1);
+        out.end();
+
+        for (Mp4Track track : tracks) {
+            out.begin("trak");
+            out.raw(track.tkhd);
+            out.begin("mdia");
+            out.raw(track.mdhd);
+            out.raw(track.hdlr);
+            out.begin("minf");
+            if (track.mediaHeader != null) {
+                out.raw(track.mediaHeader);
+            }
+            if (track.dinf != null) {
+                out.raw(track.dinf);
+            } else {
+                out.begin("dinf");
+                out.fullBox("dref", 0, 0).u32(1);
+                out.fullBox("url ", 0, 1).end();
+                out.end();
+                out.end();
+            }
+            out.begin("stbl");
+            out.raw(track.stsd);
+            out.fullBox("stts", 0, 0).u32(0).end();
+            out.fullBox("stsc", 0, 0).u32(0).end();
+            out.fullBox("stsz", 0, 0).u32(0).u32(0).end();
+            out.fullBox("stco", 0, 0).u32(0).end();
+            out.end(); // stbl
+            out.end(); // minf
+            out.end(); // mdia
+            out.end(); // trak
+        }
+
+        out.begin("mvex");
+        for (Mp4Track track : tracks) {
+            out.fullBox("trex", 0, 0).u32(track.trackId).u32(1).u32(0).u32(0).u32(0).end();
+        }
+        out.end();
+        out.end(); // moov
+        return out.toByteArray();
+    }
+
+    /**
+     * Builds the moof of a segment. The mdat that must follow it is
+     * {@link #mdatHeader(long)} plus the samples in track order.
+     */
+    public static byte[] moof(List<Mp4Track> tracks, HlsPlan.Segment segment) {
+        int moofSize = 8 + 16;
+        for (int t = 0; t < tracks.size(); t++) {
+            int samples = segment.end()[t] - segment.start()[t];
+            if (samples > 0) {
+                moofSize += 8 + 16 + 20 + 20 + 16 * samples;
+            }
+        }
+
+        Boxes out = new Boxes();
+        out.begin("moof");
+        out.fullBox("mfhd", 0, 0).u32(segment.index() + 1).end();
+        long dataOffset = moofSize + 8;
+        for (int t = 0; t < tracks.size(); t++) {
+            Mp4Track track = tracks.get(t);
+            int from = segment.start()[t];
+            int to = segment.end()[t];
+            if (to <= from) {
+                continue;
+            }
+            out.begin("traf");
+            out.fullBox("tfhd", 0, TFHD_DEFAULT_BASE_IS_MOOF).u32(track.trackId).end();
+            out.fullBox("tfdt", 1, 0).u64(track.decodeTimes[from]).end();
+            out.fullBox("trun", 1, TRUN_FLAGS).u32(to - from).u32((int) dataOffset);
+            for (int i = from; i < to; i++) {
+                out.u32(track.durations[i])
+                        .u32(track.sizes[i])
+                        .u32(track.isSync(i) ? SAMPLE_FLAGS_SYNC : SAMPLE_FLAGS_NON_SYNC)
+                        .u32((int) (track.compositionOffsets[i] + track.compositionShift));
+                dataOffset += track.sizes[i];
+            }
+            out.end(); // trun
+            out.end(); // traf
+        }
+        out.end();
+        return out.toByteArray();
+    }
+
+    public static long mdatPayloadSize(List<Mp4Track> tracks, HlsPlan.Segment segment) {
+        long size = 0;
+        for (int t = 0; t < tracks.size(); t++) {
+            Mp4Track track = tracks.get(t);
+            for (int i = segment.start()[t]; i < segment.end()[t]; i++) {
+                size += track.sizes[i];
+            }
+        }
+        return size;
+    }
+
+    public static byte[] mdatHeader(long payloadSize) {
+        return ByteBuffer.allocate(8).putInt((int) (payloadSize + 8)).put("mdat".getBytes(StandardCharsets.ISO_8859_1)).array();
+    }
+
+    /**
+     * Copies the segment's samples from the source, merging samples that are
+     * contiguous in the file into a single read.
+     */
+    public static void writeSamples(List<Mp4Track> tracks, HlsPlan.Segment segment, PositionedReader source,
+                                    OutputStream out, int bufferSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        for (int t = 0; t < tracks.size(); t++) {
+            Mp4Track track = tracks.get(t);
+            int i = segment.start()[t];
+            int to = segment.end()[t];
+            while (i < to) {
+                long runStart = track.offsets[i];
+                long runEnd = runStart + track.sizes[i];
+                i++;
+                while (i < to && track.offsets[i] == runEnd) {
+                    runEnd += track.sizes[i];
+                    i++;
+                }
+                copy(source, runStart, runEnd, out, buffer);
+            }
+        }
+    }
+
+    private static void copy(PositionedReader source, long from, long to, OutputStream out,
+                             ByteBuffer buffer) throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = source.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of data at " + position);
+            }
+            out.write(buffer.array(), 0, buffer.position());
+            position += read;
+        }
+    }
+
+    /**
+     * Minimal box builder: begin/end patch the size of nested boxes in place.
+     */
+    private static final class Boxes {
+
+        private byte[] bytes = new byte[4096];
+        private int size;
+        private final int[] stack = new int[16];
+        private int depth;
+
+        Boxes begin(String type) {
+            stack[depth++] = size;
+            return u32(0).fourcc(type);
+        }
+
+        Boxes fullBox(String type, int version, int flags) {
+            return begin(type).u32((version << 24) | flags);
+        }
+
+        Boxes end() {
+            int start = stack[--depth];
+            ByteBuffer.wrap(bytes).putInt(start, size - start);
+            return this;
+        }
+
+        Boxes raw(ByteBuffer box) {
+            return write(box.array(), box.arrayOffset(), box.limit());
+        }
+
+        Boxes fourcc(String value) {
+            byte[] ascii = value.getBytes(StandardCharsets.ISO_8859_1);
+            return write(ascii, 0, ascii.length);
+        }
+
+        Boxes u16(int value) {
+            ensure(2);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Boxes u32(int value) {
+            ensure(4);
+            ByteBuffer.wrap(bytes).putInt(size, value);
+            size += 4;
+            return this;
+        }
+
+        Boxes u64(long value) {
+            ensure(8);
+            ByteBuffer.wrap(bytes).putLong(size, value);
+            size += 8;
+            return this;
+        }
+
+        Boxes zeros(int count) {
+            ensure(count);
+            size += count;
+            return this;
+        }
+
+        Boxes matrix() {
+            return u32(0x00010000).u32(0).u32(0)
+                    .u32(0).u32(0x00010000).u32(0)
+                    .u32(0).u32(0).u32(0x40000000);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private Boxes write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
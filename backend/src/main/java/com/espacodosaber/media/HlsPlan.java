@@ -0,0 +1,89 @@
+package com.espacodosaber.media;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segment layout of a video for HLS: cuts at video sync samples once a
+ * segment reaches the target duration (so each segment starts with a
+ * keyframe), and assigns the audio samples of the same time range to it.
+ * Without a video track, audio is cut at the target duration.
+ */
+public final class HlsPlan {
+
+    /**
+     * Samples [start[t], end[t]) of each track t, and the segment's time range in seconds.
+     */
+    public record Segment(int index, double startSeconds, double durationSeconds, int[] start, int[] end) {}
+
+    public final List<Mp4Track> tracks;
+    public final List<Segment> segments;
+
+    private HlsPlan(List<Mp4Track> tracks, List<Segment> segments) {
+        this.tracks = tracks;
+        this.segments = segments;
+    }
+
+    public int targetDurationSeconds() {
+        double max = 0;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.durationSeconds());
+        }
+        return (int) Math.ceil(max);
+    }
+
+    public static HlsPlan build(List<Mp4Track> tracks, double targetSeconds) {
+        Mp4Track lead = tracks.stream().filter(Mp4Track::isVideo).findFirst()
+                .orElse(tracks.isEmpty() ? null : tracks.get(0));
+        List<Segment> segments = new ArrayList<>();
+        if (lead == null || lead.sampleCount == 0) {
+            return new HlsPlan(tracks, segments);
+        }
+
+        // cut points on the lead track, in samples
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        long target = (long) (targetSeconds * lead.timescale);
+        long segmentStart = lead.decodeTimes[0];
+        for (int i = 1; i < lead.sampleCount; i++) {
+            if (lead.isSync(i) && lead.decodeTimes[i] - segmentStart >= target) {
+                cuts.add(i);
+                segmentStart = lead.decodeTimes[i];
+            }
+        }
+        cuts.add(lead.sampleCount);
+
+        int[] cursor = new int[tracks.size()];
+        for (int s = 0; s + 1 < cuts.size(); s++) {
+            int from = cuts.get(s);
+            int to = cuts.get(s + 1);
+            double startSeconds = (double) lead.decodeTimes[from] / lead.timescale;
+            boolean last = s + 2 == cuts.size();
+            double endSeconds = last
+                    ? (double) lead.endTime() / lead.timescale
+                    : (double) lead.decodeTimes[to] / lead.timescale;
+
+            int[] start = new int[tracks.size()];
+            int[] end = new int[tracks.size()];
+            for (int t = 0; t < tracks.size(); t++) {
+                Mp4Track track = tracks.get(t);
+                start[t] = cursor[t];
+                if (track == lead) {
+                    end[t] = to;
+                } else if (last) {
+                    end[t] = track.sampleCount;
+                } else {
+                    long limit = (long) (endSeconds * track.timescale);
+                    int i = cursor[t];
+                    while (i < track.sampleCount && track.decodeTimes[i] < limit) {
+                        i++;
+                    }
+                    end[t] = i;
+                }
+                cursor[t] = end[t];
+            }
+            segments.add(new Segment(s, startSeconds, endSeconds - startSeconds, start, end));
+        }
+        return new HlsPlan(tracks, segments);
+    }
+}
@@ -0,0 +1,121 @@
+package com.espacodosaber.media;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ISO-BMFF box walking over positioned reads: only box headers (8 or 16
+ * bytes) are read while walking, never payloads.
+ */
+public final class Mp4Boxes {
+
+    /**
+     * A box located in the file. payloadStart follows the (possibly 64-bit) header.
+     */
+    public record Box(String type, long start, long payloadStart, long end) {
+
+        public long size() {
+            return end - start;
+        }
+
+        public long payloadSize() {
+            return end - payloadStart;
+        }
+    }
+
+    private Mp4Boxes() {
+    }
+
+    /**
+     * Direct children of the range [start, end). Stops at the first malformed header.
+     */
+    public static List<Box> children(PositionedReader reader, long start, long end) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        long position = start;
+        while (position + 8 <= end) {
+            Box box = header(reader, position, end);
+            if (box == null) {
+                break;
+            }
+            boxes.add(box);
+            position = box.end();
+        }
+        return boxes;
+    }
+
+    public static Box find(PositionedReader reader, long start, long end, String type) throws IOException {
+        long position = start;
+        while (position + 8 <= end) {
+            Box box = header(reader, position, end);
+            if (box == null) {
+                return null;
+            }
+            if (box.type().equals(type)) {
+                return box;
+            }
+            position = box.end();
+        }
+        return null;
+    }
+
+    /**
+     * Finds a nested box by path, e.g. find(reader, trak, "mdia", "minf", "stbl").
+     */
+    public static Box find(PositionedReader reader, Box parent, String... path) throws IOException {
+        Box current = parent;
+        for (String type : path) {
+            if (current == null) {
+                return null;
+            }
+            current = find(reader, current.payloadStart(), current.end(), type);
+        }
+        return current;
+    }
+
+    /**
+     * Reads the box header at position, or null when it does not fit in parentEnd.
+     */
+    public static Box header(PositionedReader reader, long position, long parentEnd) throws IOException {
+        int available = (int) Math.min(16, parentEnd - position);
+        ByteBuffer buffer = read(reader, position, available);
+        long size = Integer.toUnsignedLong(buffer.getInt());
+        String type = fourcc(buffer.getInt());
+        long headerSize = 8;
+        if (size == 1) {
+            if (available < 16) {
+                return null;
+            }
+            size = buffer.getLong();
+            headerSize = 16;
+        } else if (size == 0) {
+            size = parentEnd - position;
+        }
+        if (size < headerSize || position + size > parentEnd) {
+            return null;
+        }
+        return new Box(type, position, position + headerSize, position + size);
+    }
+
+    /**
+     * Reads exactly length bytes at position.
+     */
+    public static ByteBuffer read(PositionedReader reader, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = reader.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Unexpected end of data at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    public static String fourcc(int value) {
+        byte[] bytes = {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
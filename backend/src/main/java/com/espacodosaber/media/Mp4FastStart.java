@@ -0,0 +1,172 @@
+package com.espacodosaber.media;
+
+import com.espacodosaber.media.Mp4Boxes.Box;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves a trailing moov box in front of the media data ("fast start"), so
+ * progressive playback can begin without fetching the end of the file.
+ *
+ * The moov box is read into memory and its stco/co64 chunk offsets are
+ * shifted by the moov size for all data that moves. The file is then copied
+ * to a temporary sibling through a bounded buffer in the new order
+ * (boxes before the first mdat, moov, the rest), and moved over the original
+ * atomically. Files that are already fast-start, have a compressed moov, or
+ * would overflow a 32-bit stco offset are left untouched.
+ */
+public final class Mp4FastStart {
+
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    public enum Outcome { REWRITTEN, ALREADY_FAST_START, NOT_MP4, UNSUPPORTED }
+
+    private Mp4FastStart() {
+    }
+
+    /**
+     * Rewrites file in place when its moov follows the media data.
+     *
+     * @param digest when not null, updated with every byte of the rewritten file
+     */
+    public static Outcome rewrite(Path file, int bufferSize, long maxMoovSize, MessageDigest digest) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            Box moov = null;
+            Box firstMdat = null;
+            for (Box box : Mp4Boxes.children(in::read, 0, size)) {
+                if (box.type().equals("mdat") && firstMdat == null) {
+                    firstMdat = box;
+                } else if (box.type().equals("moov")) {
+                    moov = box;
+                }
+            }
+            if (moov == null) {
+                return Outcome.NOT_MP4;
+            }
+            if (firstMdat == null || moov.start() < firstMdat.start()) {
+                return Outcome.ALREADY_FAST_START;
+            }
+            if (moov.size() > maxMoovSize) {
+                return Outcome.UNSUPPORTED;
+            }
+
+            ByteBuffer moovBytes = Mp4Boxes.read(in::read, moov.start(), (int) moov.size());
+            long insertAt = firstMdat.start();
+            if (!patchChunkOffsets(moovBytes, 0, moovBytes.limit(), insertAt, moov.start(), moov.size())) {
+                return Outcome.UNSUPPORTED;
+            }
+
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), ".faststart-", ".part");
+            try {
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+                    copy(in, 0, insertAt, out, buffer, digest);
+                    moovBytes.rewind();
+                    if (digest != null) {
+                        digest.update(moovBytes.duplicate());
+                    }
+                    while (moovBytes.hasRemaining()) {
+                        out.write(moovBytes);
+                    }
+                    copy(in, insertAt, moov.start(), out, buffer, digest);
+                    copy(in, moov.end(), size, out, buffer, digest);
+                    out.force(true);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return Outcome.REWRITTEN;
+    }
+
+    /**
+     * Shifts chunk offsets that fall in [insertAt, moovStart) by shift, walking
+     * the in-memory boxes in [start, end). Returns false when the moov cannot be
+     * patched in place (compressed moov, stco overflow).
+     */
+    private static boolean patchChunkOffsets(ByteBuffer moov, int start, int end,
+                                             long insertAt, long moovStart, long shift) throws IOException {
+        PositionedReader reader = (dst, position) -> {
+            int length = Math.min(dst.remaining(), moov.limit() - (int) position);
+            if (length <= 0) {
+                return -1;
+            }
+            dst.put(moov.duplicate().position((int) position).limit((int) position + length));
+            return length;
+        };
+        List<Box> boxes = Mp4Boxes.children(reader, start, end);
+        for (Box box : boxes) {
+            int payload = (int) box.payloadStart();
+            switch (box.type()) {
+                case "cmov" -> {
+                    return false;
+                }
+                case "stco" -> {
+                    int count = moov.getInt(payload + 4);
+                    for (int i = 0; i < count; i++) {
+                        int at = payload + 8 + i * 4;
+                        long offset = Integer.toUnsignedLong(moov.getInt(at));
+                        if (offset >= insertAt && offset < moovStart) {
+                            offset += shift;
+                            if (offset > 0xFFFFFFFFL) {
+                                return false;
+                            }
+                            moov.putInt(at, (int) offset);
+                        }
+                    }
+                }
+                case "co64" -> {
+                    int count = moov.getInt(payload + 4);
+                    for (int i = 0; i < count; i++) {
+                        int at = payload + 8 + i * 8;
+                        long offset = moov.getLong(at);
+                        if (offset >= insertAt && offset < moovStart) {
+                            moov.putLong(at, offset + shift);
+                        }
+                    }
+                }
+                default -> {
+                    if (CONTAINERS.contains(box.type())
+                            && !patchChunkOffsets(moov, payload, (int) box.end(), insertAt, moovStart, shift)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void copy(FileChannel in, long from, long to, FileChannel out,
+                             ByteBuffer buffer, MessageDigest digest) throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            if (to - position < buffer.capacity()) {
+                buffer.limit((int) (to - position));
+            }
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += read;
+            buffer.flip();
+            if (digest != null) {
+                digest.update(buffer.duplicate());
+            }
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.espacodosaber.media;
+
+/**
+ * Facts read from an MP4 header. Dimensions and codecs are null when the file
+ * has no track of that kind.
+ *
+ * @param videoCodec RFC 6381 style codec string ("avc1.64001f") or the sample entry fourcc ("hvc1")
+ */
+public record Mp4Metadata(long durationMillis, Integer width, Integer height,
+                          String videoCodec, String audioCodec) {
+
+    /**
+     * Average bitrate in bits per second for a file of the given size.
+     */
+    public Long bitrate(long fileSize) {
+        if (durationMillis <= 0 || fileSize <= 0) {
+            return null;
+        }
+        return fileSize * 8_000L / durationMillis;
+    }
+}
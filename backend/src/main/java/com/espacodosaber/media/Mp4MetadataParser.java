@@ -0,0 +1,150 @@
+package com.espacodosaber.media;
+
+import com.espacodosaber.media.Mp4Boxes.Box;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Optional;
+
+/**
+ * Reads duration, resolution and codecs from an MP4/MOV file header.
+ *
+ * Walks the top-level boxes to moov (wherever it is in the file), then reads
+ * only mvhd, each trak's tkhd, hdlr and the first stsd sample entry. That is
+ * a few KB of positioned reads regardless of file size; sample tables and
+ * media data are never touched.
+ */
+public final class Mp4MetadataParser {
+
+    // visual sample entry fields before its child boxes (avcC, ...)
+    private static final int VISUAL_SAMPLE_ENTRY_SIZE = 78;
+    private static final int STSD_READ_LIMIT = 512;
+
+    private Mp4MetadataParser() {
+    }
+
+    public static Optional<Mp4Metadata> parse(FileChannel channel) throws IOException {
+        return parse(channel::read, channel.size());
+    }
+
+    /**
+     * @return empty when the data is not an ISO-BMFF file with a moov box
+     */
+    public static Optional<Mp4Metadata> parse(PositionedReader reader, long size) throws IOException {
+        Box moov = Mp4Boxes.find(reader, 0, size, "moov");
+        if (moov == null) {
+            return Optional.empty();
+        }
+
+        long durationMillis = 0;
+        Box mvhd = Mp4Boxes.find(reader, moov, "mvhd");
+        if (mvhd != null) {
+            durationMillis = movieDurationMillis(Mp4Boxes.read(reader, mvhd.payloadStart(),
+                    (int) Math.min(32, mvhd.payloadSize())));
+        }
+
+        Integer width = null;
+        Integer height = null;
+        String videoCodec = null;
+        String audioCodec = null;
+        for (Box trak : Mp4Boxes.children(reader, moov.payloadStart(), moov.end())) {
+            if (!trak.type().equals("trak")) {
+                continue;
+            }
+            String handler = handlerType(reader, trak);
+            if ("vide".equals(handler) && videoCodec == null) {
+                videoCodec = sampleEntryCodec(reader, trak);
+                int[] dimensions = trackDimensions(reader, trak);
+                if (dimensions != null) {
+                    width = dimensions[0];
+                    height = dimensions[1];
+                }
+            } else if ("soun".equals(handler) && audioCodec == null) {
+                audioCodec = sampleEntryCodec(reader, trak);
+            }
+        }
+        return Optional.of(new Mp4Metadata(durationMillis, width, height, videoCodec, audioCodec));
+    }
+
+    private static long movieDurationMillis(ByteBuffer mvhd) {
+        int version = mvhd.get(0);
+        long timescale;
+        long duration;
+        if (version == 1) {
+            timescale = Integer.toUnsignedLong(mvhd.getInt(20));
+            duration = mvhd.getLong(24);
+        } else {
+            timescale = Integer.toUnsignedLong(mvhd.getInt(12));
+            duration = Integer.toUnsignedLong(mvhd.getInt(16));
+        }
+        if (timescale == 0 || duration < 0 || duration == 0xFFFFFFFFL) {
+            return 0;
+        }
+        return duration * 1000 / timescale;
+    }
+
+    private static String handlerType(PositionedReader reader, Box trak) throws IOException {
+        Box hdlr = Mp4Boxes.find(reader, trak, "mdia", "hdlr");
+        if (hdlr == null || hdlr.payloadSize() < 12) {
+            return null;
+        }
+        return Mp4Boxes.fourcc(Mp4Boxes.read(reader, hdlr.payloadStart(), 12).getInt(8));
+    }
+
+    /**
+     * Presentation width and height from tkhd (16.16 fixed point).
+     */
+    private static int[] trackDimensions(PositionedReader reader, Box trak) throws IOException {
+        Box tkhd = Mp4Boxes.find(reader, trak, "tkhd");
+        if (tkhd == null) {
+            return null;
+        }
+        ByteBuffer payload = Mp4Boxes.read(reader, tkhd.payloadStart(), (int) Math.min(96, tkhd.payloadSize()));
+        int offset = payload.get(0) == 1 ? 88 : 76;
+        if (payload.limit() < offset + 8) {
+            return null;
+        }
+        int width = payload.getInt(offset) >>> 16;
+        int height = payload.getInt(offset + 4) >>> 16;
+        return width > 0 && height > 0 ? new int[]{width, height} : null;
+    }
+
+    /**
+     * Codec of the first stsd sample entry; avc1/avc3 get the profile and
+     * level from avcC ("avc1.64001f").
+     */
+    private static String sampleEntryCodec(PositionedReader reader, Box trak) throws IOException {
+        Box stsd = Mp4Boxes.find(reader, trak, "mdia", "minf", "stbl", "stsd");
+        if (stsd == null || stsd.payloadSize() < 16) {
+            return null;
+        }
+        ByteBuffer payload = Mp4Boxes.read(reader, stsd.payloadStart(),
+                (int) Math.min(STSD_READ_LIMIT, stsd.payloadSize()));
+        // full box header (4) + entry_count (4), then the first entry
+        int entryStart = 8;
+        long entrySize = Integer.toUnsignedLong(payload.getInt(entryStart));
+        String format = Mp4Boxes.fourcc(payload.getInt(entryStart + 4));
+        if (!format.equals("avc1") && !format.equals("avc3")) {
+            return format;
+        }
+
+        int childStart = entryStart + 8 + VISUAL_SAMPLE_ENTRY_SIZE;
+        int entryEnd = (int) Math.min(payload.limit(), entryStart + entrySize);
+        while (childStart + 8 <= entryEnd) {
+            int childSize = payload.getInt(childStart);
+            String childType = Mp4Boxes.fourcc(payload.getInt(childStart + 4));
+            if (childType.equals("avcC") && childStart + 12 <= entryEnd) {
+                return String.format("%s.%02x%02x%02x", format,
+                        payload.get(childStart + 9) & 0xFF,
+                        payload.get(childStart + 10) & 0xFF,
+                        payload.get(childStart + 11) & 0xFF);
+            }
+            if (childSize < 8) {
+                break;
+            }
+            childStart += childSize;
+        }
+        return format;
+    }
+}
@@ -0,0 +1,286 @@
+package com.espacodosaber.media;
+
+import com.espacodosaber.media.Mp4Boxes.Box;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * One track of a progressive MP4 with its sample table flattened into arrays
+ * (file offset, size, decode time, duration, composition offset, sync flag),
+ * plus the raw header boxes needed to describe it in a fragmented init segment.
+ * The start of the edit list (elst) is kept as a composition shift, since
+ * fragments carry no edit list of their own.
+ */
+public final class Mp4Track {
+
+    public final int trackId;
+    public final String handler;
+    public final long timescale;
+
+    // raw boxes (header included), copied as-is into the init segment
+    public final ByteBuffer tkhd;
+    public final ByteBuffer mdhd;
+    public final ByteBuffer hdlr;
+    public final ByteBuffer mediaHeader; // vmhd / smhd / nmhd, may be null
+    public final ByteBuffer dinf;        // may be null
+    public final ByteBuffer stsd;
+
+    public final int sampleCount;
+    public final long[] offsets;
+    public final int[] sizes;
+    public final long[] decodeTimes;
+    public final int[] durations;
+    public final int[] compositionOffsets;
+    // added to every composition offset: leading empty edit minus the media time presentation starts at
+    public final long compositionShift;
+    private final BitSet sync; // null when every sample is a sync sample
+
+    private Mp4Track(int trackId, String handler, long timescale,
+                     ByteBuffer tkhd, ByteBuffer mdhd, ByteBuffer hdlr, ByteBuffer mediaHeader,
+                     ByteBuffer dinf, ByteBuffer stsd, long[] offsets, int[] sizes, long[] decodeTimes,
+                     int[] durations, int[] compositionOffsets, long compositionShift, BitSet sync) {
+        this.trackId = trackId;
+        this.handler = handler;
+        this.timescale = timescale;
+        this.tkhd = tkhd;
+        this.mdhd = mdhd;
+        this.hdlr = hdlr;
+        this.mediaHeader = mediaHeader;
+        this.dinf = dinf;
+        this.stsd = stsd;
+        this.sampleCount = sizes.length;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        this.decodeTimes = decodeTimes;
+        this.durations = durations;
+        this.compositionOffsets = compositionOffsets;
+        this.compositionShift = compositionShift;
+        this.sync = sync;
+    }
+
+    public boolean isVideo() {
+        return "vide".equals(handler);
+    }
+
+    public boolean isAudio() {
+        return "soun".equals(handler);
+    }
+
+    public boolean isSync(int sample) {
+        return sync == null || sync.get(sample);
+    }
+
+    /**
+     * End of the track in timescale units.
+     */
+    public long endTime() {
+        return sampleCount == 0 ? 0 : decodeTimes[sampleCount - 1] + durations[sampleCount - 1];
+    }
+
+    /**
+     * Video and audio tracks of a progressive (non-fragmented) MP4.
+     *
+     * @throws IOException when there is no moov or a sample table is missing or unsupported
+     */
+    public static List<Mp4Track> readTracks(PositionedReader reader, long size) throws IOException {
+        Box moov = Mp4Boxes.find(reader, 0, size, "moov");
+        if (moov == null) {
+            throw new IOException("No moov box");
+        }
+        Box mvhd = Mp4Boxes.find(reader, moov, "mvhd");
+        long movieTimescale = 0;
+        if (mvhd != null) {
+            ByteBuffer mvhdBytes = raw(reader, mvhd);
+            movieTimescale = Integer.toUnsignedLong(mvhdBytes.get(8) == 1 ? mvhdBytes.getInt(28) : mvhdBytes.getInt(20));
+        }
+        List<Mp4Track> tracks = new ArrayList<>();
+        for (Box trak : Mp4Boxes.children(reader, moov.payloadStart(), moov.end())) {
+            if (trak.type().equals("trak")) {
+                Mp4Track track = readTrack(reader, trak, movieTimescale);
+                if (track != null && (track.isVideo() || track.isAudio())) {
+                    tracks.add(track);
+                }
+            }
+        }
+        return tracks;
+    }
+
+    private static Mp4Track readTrack(PositionedReader reader, Box trak, long movieTimescale) throws IOException {
+        Box tkhd = Mp4Boxes.find(reader, trak, "tkhd");
+        Box mdia = Mp4Boxes.find(reader, trak, "mdia");
+        Box mdhd = Mp4Boxes.find(reader, mdia, "mdhd");
+        Box hdlr = Mp4Boxes.find(reader, mdia, "hdlr");
+        Box minf = Mp4Boxes.find(reader, mdia, "minf");
+        Box stbl = Mp4Boxes.find(reader, minf, "stbl");
+        if (tkhd == null || mdhd == null || hdlr == null || stbl == null) {
+            return null;
+        }
+
+        ByteBuffer tkhdBytes = raw(reader, tkhd);
+        ByteBuffer mdhdBytes = raw(reader, mdhd);
+        ByteBuffer hdlrBytes = raw(reader, hdlr);
+        String handler = Mp4Boxes.fourcc(hdlrBytes.getInt(16));
+        int trackId = tkhdBytes.get(8) == 1 ? tkhdBytes.getInt(28) : tkhdBytes.getInt(20);
+        long timescale = Integer.toUnsignedLong(mdhdBytes.get(8) == 1 ? mdhdBytes.getInt(28) : mdhdBytes.getInt(20));
+
+        ByteBuffer mediaHeader = null;
+        for (String type : new String[]{"vmhd", "smhd", "nmhd"}) {
+            Box box = Mp4Boxes.find(reader, minf, type);
+            if (box != null) {
+                mediaHeader = raw(reader, box);
+                break;
+            }
+        }
+        Box dinf = Mp4Boxes.find(reader, minf, "dinf");
+
+        ByteBuffer stsd = required(reader, stbl, "stsd");
+        ByteBuffer stts = required(reader, stbl, "stts");
+        ByteBuffer stsc = required(reader, stbl, "stsc");
+        ByteBuffer stsz = required(reader, stbl, "stsz");
+        Box stcoBox = Mp4Boxes.find(reader, stbl, "stco");
+        Box co64Box = Mp4Boxes.find(reader, stbl, "co64");
+        if (stcoBox == null && co64Box == null) {
+            throw new IOException("Track " + trackId + " has no chunk offsets");
+        }
+        Box stss = Mp4Boxes.find(reader, stbl, "stss");
+        Box ctts = Mp4Boxes.find(reader, stbl, "ctts");
+
+        // stsz: header(8) version/flags(4) sample_size(4) sample_count(4) entries
+        int fixedSize = stsz.getInt(12);
+        int count = stsz.getInt(16);
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = fixedSize != 0 ? fixedSize : stsz.getInt(20 + i * 4);
+        }
+
+        // stts: (sample_count, sample_delta) runs
+        long[] decodeTimes = new long[count];
+        int[] durations = new int[count];
+        int sample = 0;
+        long time = 0;
+        int entries = stts.getInt(12);
+        for (int e = 0; e < entries && sample < count; e++) {
+            int runLength = stts.getInt(16 + e * 8);
+            int delta = stts.getInt(20 + e * 8);
+            for (int i = 0; i < runLength && sample < count; i++, sample++) {
+                decodeTimes[sample] = time;
+                durations[sample] = delta;
+                time += Integer.toUnsignedLong(delta);
+            }
+        }
+
+        int[] compositionOffsets = new int[count];
+        if (ctts != null) {
+            ByteBuffer cttsBytes = raw(reader, ctts);
+            sample = 0;
+            entries = cttsBytes.getInt(12);
+            for (int e = 0; e < entries && sample < count; e++) {
+                int runLength = cttsBytes.getInt(16 + e * 8);
+                int offset = cttsBytes.getInt(20 + e * 8);
+                for (int i = 0; i < runLength && sample < count; i++, sample++) {
+                    compositionOffsets[sample] = offset;
+                }
+            }
+        }
+
+        BitSet sync = null;
+        if (stss != null) {
+            ByteBuffer stssBytes = raw(reader, stss);
+            sync = new BitSet(count);
+            entries = stssBytes.getInt(12);
+            for (int e = 0; e < entries; e++) {
+                sync.set(stssBytes.getInt(16 + e * 4) - 1);
+            }
+        }
+
+        long[] chunkOffsets;
+        if (co64Box != null) {
+            ByteBuffer co64 = raw(reader, co64Box);
+            chunkOffsets = new long[co64.getInt(12)];
+            for (int i = 0; i < chunkOffsets.length; i++) {
+                chunkOffsets[i] = co64.getLong(16 + i * 8);
+            }
+        } else {
+            ByteBuffer stco = raw(reader, stcoBox);
+            chunkOffsets = new long[stco.getInt(12)];
+            for (int i = 0; i < chunkOffsets.length; i++) {
+                chunkOffsets[i] = Integer.toUnsignedLong(stco.getInt(16 + i * 4));
+            }
+        }
+
+        // stsc: (first_chunk, samples_per_chunk, description_index) runs over chunks
+        long[] offsets = new long[count];
+        sample = 0;
+        entries = stsc.getInt(12);
+        for (int e = 0; e < entries && sample < count; e++) {
+            int firstChunk = stsc.getInt(16 + e * 12);
+            int samplesPerChunk = stsc.getInt(20 + e * 12);
+            int lastChunk = e + 1 < entries ? stsc.getInt(16 + (e + 1) * 12) - 1 : chunkOffsets.length;
+            for (int chunk = firstChunk; chunk <= lastChunk && sample < count; chunk++) {
+                long offset = chunkOffsets[chunk - 1];
+                for (int i = 0; i < samplesPerChunk && sample < count; i++, sample++) {
+                    offsets[sample] = offset;
+                    offset += sizes[sample];
+                }
+            }
+        }
+        if (sample < count) {
+            throw new IOException("Track " + trackId + " sample table is inconsistent");
+        }
+
+        return new Mp4Track(trackId, handler, timescale, tkhdBytes, mdhdBytes, hdlrBytes, mediaHeader,
+                dinf != null ? raw(reader, dinf) : null, stsd, offsets, sizes, decodeTimes, durations,
+                compositionOffsets, editShift(reader, trak, timescale, movieTimescale), sync);
+    }
+
+    /**
+     * Composition shift from the start of the edit list: leading empty edits
+     * (media_time -1) delay the track, and the media time of the first real
+     * edit is where presentation starts (the B-frame delay of most encoders).
+     * Later edits are ignored.
+     */
+    private static long editShift(PositionedReader reader, Box trak, long timescale,
+                                  long movieTimescale) throws IOException {
+        Box elst = Mp4Boxes.find(reader, trak, "edts", "elst");
+        if (elst == null || movieTimescale == 0) {
+            return 0;
+        }
+        ByteBuffer bytes = raw(reader, elst);
+        boolean wide = bytes.get(8) == 1;
+        int entries = bytes.getInt(12);
+        long delay = 0;
+        for (int e = 0; e < entries; e++) {
+            int at = 16 + e * (wide ? 20 : 12);
+            long segmentDuration = wide ? bytes.getLong(at) : Integer.toUnsignedLong(bytes.getInt(at));
+            long mediaTime = wide ? bytes.getLong(at + 8) : bytes.getInt(at + 4);
+            if (mediaTime != -1) {
+                return delay * timescale / movieTimescale - mediaTime;
+            }
+            delay += segmentDuration;
+        }
+        return 0;
+    }
+
+    private static ByteBuffer required(PositionedReader reader, Box stbl, String type) throws IOException {
+        Box box = Mp4Boxes.find(reader, stbl, type);
+        if (box == null) {
+            throw new IOException("Missing " + type + " box");
+        }
+        return raw(reader, box);
+    }
+
+    /**
+     * The whole box, header included. Offsets used on it are relative to the
+     * box start, so 8-byte headers are assumed (always true for these boxes).
+     */
+    private static ByteBuffer raw(PositionedReader reader, Box box) throws IOException {
+        if (box.payloadStart() - box.start() != 8) {
+            throw new IOException("Unsupported 64-bit header on " + box.type());
+        }
+        return Mp4Boxes.read(reader, box.start(), (int) box.size());
+    }
+}
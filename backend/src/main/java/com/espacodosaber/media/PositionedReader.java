@@ -0,0 +1,17 @@
+package com.espacodosaber.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random-access byte source, shaped like FileChannel.read(ByteBuffer, long)
+ * so a FileChannel can be passed as {@code channel::read}.
+ */
+@FunctionalInterface
+public interface PositionedReader {
+
+    /**
+     * Reads into dst starting at position; returns the bytes read or -1 at end of data.
+     */
+    int read(ByteBuffer dst, long position) throws IOException;
+}
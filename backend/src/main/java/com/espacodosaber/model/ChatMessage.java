@@ -8,14 +8,16 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        @Index(name = "idx_chat_conversation_sent", columnList = "conversation_key, sent_at DESC, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class ChatMessage {
 
+    // Snowflake id assigned in memory, see SnowflakeIdGenerator
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -37,4 +39,12 @@ public class ChatMessage {
 
     @Column
     private Long videoId; // Optional: associate with a specific video
+
+    // "<lower user id>:<higher user id>" for direct messages, null otherwise
+    @Column(length = 41)
+    private String conversationKey;
+
+    public static String conversationKey(Long userId, Long otherUserId) {
+        return Math.min(userId, otherUserId) + ":" + Math.max(userId, otherUserId);
+    }
 }
@@ -0,0 +1,72 @@
+package com.espacodosaber.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent video processing job, claimed by workers on any backend replica
+ * (see ProcessingJobQueue). The table is written through JDBC; the entity
+ * only defines the schema, except for the partial unique index on active
+ * jobs, which SchemaMigrations creates.
+ */
+@Entity
+@Table(name = "processing_jobs", indexes = {
+        @Index(name = "idx_processing_jobs_claim", columnList = "type, status, priority DESC, run_after"),
+        @Index(name = "idx_processing_jobs_lease", columnList = "status, lease_expires_at"),
+        @Index(name = "idx_processing_jobs_video", columnList = "video_id, type")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessingJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ProcessingJobType type;
+
+    @Column(nullable = false)
+    private Long videoId;
+
+    // Higher runs first
+    @Column(nullable = false)
+    private Integer priority = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ProcessingJobStatus status = ProcessingJobStatus.QUEUED;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private Integer maxAttempts = 5;
+
+    @Column(nullable = false)
+    private LocalDateTime runAfter = LocalDateTime.now();
+
+    @Column(length = 64)
+    private String leaseOwner;
+
+    @Column
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(length = 2000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column
+    private LocalDateTime startedAt;
+
+    @Column
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,8 @@
+package com.espacodosaber.model;
+
+public enum ProcessingJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package com.espacodosaber.model;
+
+public enum ProcessingJobType {
+    METADATA,
+    HLS,
+    THUMBNAIL
+}
@@ -0,0 +1,42 @@
+package com.espacodosaber.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Marks a chunk of an UploadSession as written to disk.
+ */
+@Entity
+@Table(name = "upload_chunks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadChunk {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private Long size; // in bytes
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt = LocalDateTime.now();
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        @Column(name = "session_id", length = 36)
+        private String sessionId;
+
+        @Column(name = "chunk_index")
+        private Integer chunkIndex;
+    }
+}
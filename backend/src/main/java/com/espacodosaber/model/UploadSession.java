@@ -0,0 +1,63 @@
+package com.espacodosaber.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(length = 2000)
+    private String description;
+
+    @Column(nullable = false)
+    private Boolean isPublic = false;
+
+    @Column(nullable = false)
+    private Boolean isLive = false;
+
+    @Column
+    private String originalFilename;
+
+    @Column(nullable = false)
+    private Long totalSize; // in bytes
+
+    @Column(nullable = false)
+    private Integer chunkSize; // in bytes
+
+    @Column(nullable = false)
+    private Integer totalChunks;
+
+    @Column(nullable = false)
+    private String filePath; // preallocated partial file
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private UploadStatus status = UploadStatus.OPEN;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column
+    private LocalDateTime completedAt;
+
+    @Column
+    private Long videoId;
+}
@@ -1,5 +1,6 @@
 package com.espacodosaber.model;
 
+import com.espacodosaber.security.PrincipalCacheEvictionListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,6 +12,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(PrincipalCacheEvictionListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,5 +1,6 @@
 package com.espacodosaber.model;
 
+import com.espacodosaber.service.CatalogueCacheEvictionListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,7 +11,9 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "videos")
+@Table(name = "videos",
+       indexes = @Index(name = "idx_videos_public_uploaded", columnList = "is_public, uploaded_at, id"))
+@EntityListeners(CatalogueCacheEvictionListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,7 +33,19 @@ public class Video {
     private String filePath;
 
     @Column
-    private String thumbnailPath;
+    private String thumbnailPath; // storage key of the poster image
+
+    @Column
+    private String previewsPath; // storage key of the seek-preview WebVTT
+
+    @Column
+    private Long fileSize; // in bytes
+
+    @Column(length = 64)
+    private String checksum; // SHA-256, hex
+
+    @Column
+    private String contentType;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "teacher_id", nullable = false)
@@ -39,6 +54,24 @@ public class Video {
     @Column(nullable = false)
     private Long duration; // in seconds
 
+    @Column
+    private Integer width;
+
+    @Column
+    private Integer height;
+
+    @Column(length = 32)
+    private String videoCodec; // e.g. avc1.64001f
+
+    @Column(length = 32)
+    private String audioCodec;
+
+    @Column
+    private Long bitrate; // average, bits per second
+
+    @Column
+    private LocalDateTime mediaProbedAt; // null until the file header was read
+
     @Column(nullable = false)
     private Boolean isLive = false;
 
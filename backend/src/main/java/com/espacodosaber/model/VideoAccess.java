@@ -8,7 +8,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "video_access")
+@Table(name = "video_access",
+       uniqueConstraints = @UniqueConstraint(name = "uk_video_access_video_student",
+                                             columnNames = {"video_id", "student_id"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,14 +1,56 @@
 package com.espacodosaber.repository;
 
 import com.espacodosaber.model.ChatMessage;
-import com.espacodosaber.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    List<ChatMessage> findBySenderOrReceiverOrderBySentAtDesc(User sender, User receiver);
-    List<ChatMessage> findByReceiverAndIsReadFalse(User receiver);
+
+    // Both follow idx_chat_conversation_sent (conversation_key, sent_at DESC, id)
+    @Query("select m from ChatMessage m where m.conversationKey = :key order by m.sentAt desc, m.id asc")
+    List<ChatMessage> findConversationFirstPage(@Param("key") String conversationKey, Pageable pageable);
+
+    @Query("select m from ChatMessage m where m.conversationKey = :key " +
+           "and (m.sentAt < :sentAt or (m.sentAt = :sentAt and m.id > :id)) " +
+           "order by m.sentAt desc, m.id asc")
+    List<ChatMessage> findConversationPageBefore(@Param("key") String conversationKey,
+                                                 @Param("sentAt") LocalDateTime sentAt,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+
+    @Modifying
+    @Query(value = "UPDATE chat_messages SET conversation_key = " +
+                   "CAST(LEAST(sender_id, receiver_id) AS VARCHAR) || ':' || CAST(GREATEST(sender_id, receiver_id) AS VARCHAR) " +
+                   "WHERE conversation_key IS NULL AND receiver_id IS NOT NULL",
+           nativeQuery = true)
+    int backfillConversationKeys();
+
+    List<ChatMessage> findByReceiverIdAndIsReadFalse(Long receiverId);
+
+    long countByReceiverIdAndIsReadFalse(Long receiverId);
+
+    @Modifying
+    @Query("update ChatMessage m set m.isRead = true " +
+           "where m.id = :id and m.receiver.id = :receiverId and m.isRead = false")
+    int markRead(@Param("id") Long messageId, @Param("receiverId") Long receiverId);
+
+    /**
+     * Marks every message received in the conversation up to and including
+     * upToId as read. Snowflake ids grow with time, so id order is send order.
+     */
+    @Modifying
+    @Query("update ChatMessage m set m.isRead = true " +
+           "where m.conversationKey = :key and m.receiver.id = :receiverId " +
+           "and m.isRead = false and m.id <= :upToId")
+    int markConversationRead(@Param("key") String conversationKey,
+                             @Param("receiverId") Long receiverId,
+                             @Param("upToId") Long upToId);
 }
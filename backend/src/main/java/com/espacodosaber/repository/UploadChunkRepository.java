@@ -0,0 +1,26 @@
+package com.espacodosaber.repository;
+
+import com.espacodosaber.model.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, UploadChunk.Key> {
+
+    @Query("select c.id.chunkIndex from UploadChunk c where c.id.sessionId = :sessionId")
+    List<Integer> findChunkIndexes(@Param("sessionId") String sessionId);
+
+    @Query("select count(c) from UploadChunk c where c.id.sessionId = :sessionId")
+    long countBySessionId(@Param("sessionId") String sessionId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadChunk c where c.id.sessionId = :sessionId")
+    void deleteBySessionId(@Param("sessionId") String sessionId);
+}
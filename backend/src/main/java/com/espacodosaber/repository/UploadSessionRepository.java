@@ -0,0 +1,38 @@
+package com.espacodosaber.repository;
+
+import com.espacodosaber.model.UploadSession;
+import com.espacodosaber.model.UploadStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    /**
+     * Compare-and-set of the session status.
+     *
+     * @return 1 when the session was in status {@code from}, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.status = :to where s.id = :id and s.status = :from")
+    int transition(@Param("id") String id, @Param("from") UploadStatus from, @Param("to") UploadStatus to);
+
+    /**
+     * Open sessions created before the cutoff that received no chunk since.
+     */
+    @Query("select s from UploadSession s where s.status = :status and s.createdAt < :cutoff " +
+           "and not exists (select c from UploadChunk c where c.id.sessionId = s.id and c.receivedAt >= :cutoff) " +
+           "order by s.createdAt")
+    List<UploadSession> findIdle(@Param("status") UploadStatus status,
+                                 @Param("cutoff") LocalDateTime cutoff,
+                                 Pageable limit);
+}
@@ -0,0 +1,14 @@
+package com.espacodosaber.repository;
+
+import com.espacodosaber.model.Role;
+
+/**
+ * Closed projection of the columns the authentication path needs.
+ * Avoids loading the full User graph (accessLogs, videoAccesses) per request.
+ */
+public interface UserAuthProjection {
+    Long getId();
+    String getUsername();
+    Role getRole();
+    Boolean getActive();
+}
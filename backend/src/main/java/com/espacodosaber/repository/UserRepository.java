@@ -1,10 +1,14 @@
 package com.espacodosaber.repository;
 
+import com.espacodosaber.dto.UserCard;
 import com.espacodosaber.model.User;
 import com.espacodosaber.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +19,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByRole(Role role);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    @Query("select u.id as id, u.username as username, u.role as role, u.active as active " +
+           "from User u where u.username = :username")
+    Optional<UserAuthProjection> findAuthProjectionByUsername(@Param("username") String username);
+
+    @Query("select new com.espacodosaber.dto.UserCard(u.id, u.username, u.fullName) from User u where u.id = :id")
+    Optional<UserCard> findCardById(@Param("id") Long id);
+
+    @Query("select new com.espacodosaber.dto.UserCard(u.id, u.username, u.fullName) from User u where u.id in :ids")
+    List<UserCard> findCardsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -2,9 +2,14 @@ package com.espacodosaber.repository;
 
 import com.espacodosaber.model.Video;
 import com.espacodosaber.model.User;
+import com.espacodosaber.dto.VideoResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -12,4 +17,33 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
     List<Video> findByTeacher(User teacher);
     List<Video> findByIsPublicTrue();
     List<Video> findByIsLiveTrue();
+
+    String PUBLIC_VIDEO_RESPONSE =
+            "select new com.espacodosaber.dto.VideoResponse(" +
+            "v.id, v.title, v.description, v.thumbnailPath, t.id, t.fullName, " +
+            "v.duration, v.isLive, v.isPublic, v.uploadedAt, " +
+            "v.width, v.height, v.videoCodec, v.audioCodec, v.bitrate) " +
+            "from Video v join v.teacher t where v.isPublic = true ";
+
+    // Keyset pagination over (uploadedAt desc, id desc), served by idx_videos_public_uploaded
+    @Query(PUBLIC_VIDEO_RESPONSE + "order by v.uploadedAt desc, v.id desc")
+    List<VideoResponse> findPublicFirstPage(Pageable limit);
+
+    @Query(PUBLIC_VIDEO_RESPONSE +
+           "and (v.uploadedAt < :uploadedAt or (v.uploadedAt = :uploadedAt and v.id < :id)) " +
+           "order by v.uploadedAt desc, v.id desc")
+    List<VideoResponse> findPublicPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt,
+                                            @Param("id") Long id,
+                                            Pageable limit);
+
+    @Query("select v.id from Video v where v.mediaProbedAt is null and v.id > :afterId order by v.id")
+    List<Long> findIdsPendingProbe(@Param("afterId") Long afterId, Pageable limit);
+
+    // A video whose thumbnail job already failed for good is not queued again
+    @Query("select v.id from Video v where v.thumbnailPath is null and v.id > :afterId " +
+           "and not exists (select j.id from ProcessingJob j where j.videoId = v.id " +
+           "and j.type = com.espacodosaber.model.ProcessingJobType.THUMBNAIL " +
+           "and j.status = com.espacodosaber.model.ProcessingJobStatus.FAILED) " +
+           "order by v.id")
+    List<Long> findIdsMissingThumbnail(@Param("afterId") Long afterId, Pageable limit);
 }
@@ -1,10 +1,10 @@
 package com.espacodosaber.security;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,11 +16,12 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+@Log4j2
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
-    private KeycloakTokenProvider keycloakTokenProvider;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
@@ -29,40 +30,33 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-        System.out.println("[JWT FILTER] === START - Processing request: " + request.getRequestURI());
         try {
             String token = getJwtFromRequest(request);
 
-            System.out.println("[JWT FILTER] Token extracted: " + (token != null ? "YES" : "NO"));
+            if (StringUtils.hasText(token)) {
+                // Signature and expiry are checked once; the username comes from the verified claims
+                VerifiedToken verified = verifiedTokenCache.verify(token);
+                String username = verified.username();
 
-            if (StringUtils.hasText(token) && keycloakTokenProvider.validateKeycloakToken(token)) {
-                System.out.println("[JWT FILTER] Token validated successfully with Keycloak");
-                
-                // Get user info from Keycloak
-                JsonNode userInfo = keycloakTokenProvider.getUserInfoFromKeycloak(token);
-                String username = userInfo.get("preferred_username").asText();
-                
-                System.out.println("[JWT FILTER] Username from Keycloak token: " + username);
+                // Load principal (role/authorities) from the principal cache
+                UserDetails userDetails = userDetailsService.loadPrincipal(username);
 
-                // Load user details from database (includes role/authorities)
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                System.out.println("[JWT FILTER] UserDetails loaded: " + userDetails.getUsername());
-                System.out.println("[JWT FILTER] Authorities: " + userDetails.getAuthorities());
-                
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                if (userDetails.isEnabled()) {
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                System.out.println("[JWT FILTER] Authentication set in SecurityContext");
-            } else {
-                System.out.println("[JWT FILTER] Token validation failed or no token provided");
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    log.debug("Authenticated " + username + " " + userDetails.getAuthorities()
+                            + " for " + request.getRequestURI());
+                } else {
+                    log.debug("User is inactive: " + username);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
         }
 
-        System.out.println("[JWT FILTER] === END - Passing to next filter");
         filterChain.doFilter(request, response);
     }
 
@@ -2,51 +2,112 @@ package com.espacodosaber.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Signing keys and the JwtParser are derived once at startup; the parser is
+ * immutable and shared by all requests.
+ *
+ * Key rotation: tokens are signed with jwt.secret under jwt.key-id (kid header).
+ * jwt.previous-keys ("kid=secret,kid2=secret2") stay valid for verification
+ * until removed. Tokens without a kid are verified with the active key.
+ */
 @Component
 public class JwtTokenProvider {
 
     @Value("${jwt.secret}")
     private String jwtSecret;
 
+    @Value("${jwt.key-id:primary}")
+    private String activeKeyId;
+
+    @Value("${jwt.previous-keys:}")
+    private String previousKeys;
+
     @Value("${jwt.expiration}")
     private long jwtExpirationMs;
 
+    private SecretKey signingKey;
+    private Map<String, SecretKey> verificationKeys;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        keys.put(activeKeyId, signingKey);
+        if (StringUtils.hasText(previousKeys)) {
+            for (String entry : previousKeys.split(",")) {
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalStateException("Invalid jwt.previous-keys entry, expected kid=secret");
+                }
+                String kid = entry.substring(0, separator).trim();
+                String secret = entry.substring(separator + 1).trim();
+                keys.putIfAbsent(kid, Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        this.verificationKeys = Collections.unmodifiableMap(keys);
+
+        this.jwtParser = Jwts.parser()
+                .keyLocator(new LocatorAdapter<Key>() {
+                    @Override
+                    protected Key locate(JwsHeader header) {
+                        String kid = header.getKeyId();
+                        if (kid == null) {
+                            return signingKey;
+                        }
+                        SecretKey key = verificationKeys.get(kid);
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Unknown signing key id: " + kid);
+                        }
+                        return key;
+                    }
+                })
+                .build();
+    }
+
     public String generateToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
         return Jwts.builder()
+                .header().keyId(activeKeyId).and()
                 .subject(userPrincipal.getUsername())
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(key)
+                .signWith(signingKey)
                 .compact();
     }
 
+    /**
+     * Verifies the signature and expiry and returns the claims in a single parse.
+     *
+     * @throws JwtException if the token is invalid
+     */
+    public Claims parseAndValidate(String token) {
+        return jwtParser.parseSignedClaims(token).getPayload();
+    }
+
     public String getUsernameFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parseAndValidate(token).getSubject();
     }
 
     public boolean validateToken(String authToken) {
         try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parser().verifyWith(key).build().parseSignedClaims(authToken);
+            parseAndValidate(authToken);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             return false;
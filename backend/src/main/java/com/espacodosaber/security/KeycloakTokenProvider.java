@@ -6,18 +6,48 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.log4j.Log4j2;
 
+import java.net.URL;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+
 /**
  * Keycloak Token Provider - Bridges Keycloak OIDC tokens with application JWT tokens
  * 
  * Option A: Hybrid approach - Uses Keycloak as user source but maintains JWT token generation
  * This allows gradual migration and compatibility with existing JWT infrastructure
+ *
+ * Token validation modes (keycloak.token-validation):
+ * - local:  verifies the RS256 signature offline against the realm JWKS (cached, refreshed on kid miss)
+ * - remote: calls the Keycloak userinfo endpoint for every token
  */
 @Log4j2
 @Component
@@ -35,9 +65,113 @@ public class KeycloakTokenProvider {
     @Value("${keycloak.client-secret:backend-secret}")
     private String clientSecret;
 
+    @Value("${keycloak.token-validation:local}")
+    private String tokenValidation;
+
+    @Value("${keycloak.jwks-uri:}")
+    private String jwksUri;
+
+    @Value("${keycloak.issuer-uri:}")
+    private String issuerUri;
+
+    @Value("${keycloak.jwks-cache-ttl-ms:300000}")
+    private long jwksCacheTtlMs;
+
+    @Value("${keycloak.jwks-refresh-timeout-ms:15000}")
+    private long jwksRefreshTimeoutMs;
+
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private JwtDecoder jwtDecoder;
+
+    private JwtDecoder logoutTokenDecoder;
+
+    private static final String BACKCHANNEL_LOGOUT_EVENT = "http://schemas.openid.net/event/backchannel-logout";
+
+    @PostConstruct
+    public void initJwtDecoder() throws Exception {
+        // Built in both modes: back-channel logout tokens are always verified
+        // locally. Keys are only fetched on first use.
+        String certsUrl = StringUtils.hasText(jwksUri) ? jwksUri : String.format(
+            "%s/realms/%s/protocol/openid-connect/certs", keycloakServerUrl, keycloakRealm);
+
+        // Keys are fetched lazily, cached for the TTL, refreshed ahead of expiry
+        // by a background task and re-fetched (rate limited) when an unknown kid shows up
+        JWKSource<SecurityContext> jwkSource = JWKSourceBuilder.<SecurityContext>create(new URL(certsUrl))
+            .cache(jwksCacheTtlMs, jwksRefreshTimeoutMs)
+            .refreshAheadCache(JWKSourceBuilder.DEFAULT_REFRESH_AHEAD_TIME, true)
+            .build();
+
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Claim checks are done by the Spring validators below
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {});
+
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        OAuth2TokenValidator<Jwt> validator = StringUtils.hasText(issuerUri)
+            ? JwtValidators.createDefaultWithIssuer(issuerUri)
+            : JwtValidators.createDefault();
+        decoder.setJwtValidator(validator);
+        this.jwtDecoder = decoder;
+
+        // Logout tokens may be typed "logout+jwt" (OIDC Back-Channel Logout 1.0)
+        DefaultJWTProcessor<SecurityContext> logoutProcessor = new DefaultJWTProcessor<>();
+        logoutProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        logoutProcessor.setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(
+            JOSEObjectType.JWT, new JOSEObjectType("logout+jwt"), null));
+        logoutProcessor.setJWTClaimsSetVerifier((claims, context) -> {});
+
+        NimbusJwtDecoder logoutDecoder = new NimbusJwtDecoder(logoutProcessor);
+        logoutDecoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+            new JwtTimestampValidator(), this::validateLogoutToken));
+        this.logoutTokenDecoder = logoutDecoder;
+
+        if (isLocalValidation()) {
+            log.info("Keycloak tokens verified locally against JWKS: " + certsUrl);
+        }
+    }
+
+    /**
+     * Verifies an OIDC back-channel logout token (signature, issuer, audience,
+     * logout event, no nonce) and returns its claims.
+     */
+    public Map<String, Object> verifyLogoutToken(String logoutToken) {
+        try {
+            return logoutTokenDecoder.decode(logoutToken).getClaims();
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid logout token: " + e.getMessage());
+        }
+    }
+
+    private OAuth2TokenValidatorResult validateLogoutToken(Jwt jwt) {
+        String issuer = jwt.getIssuer() != null ? jwt.getIssuer().toString() : null;
+        boolean issuerMatches = StringUtils.hasText(issuerUri)
+            ? issuerUri.equals(issuer)
+            : issuer != null && issuer.endsWith("/realms/" + keycloakRealm);
+        if (!issuerMatches) {
+            return invalidLogoutToken("unexpected issuer " + issuer);
+        }
+        if (jwt.getAudience() == null || !jwt.getAudience().contains(clientId)) {
+            return invalidLogoutToken("audience does not contain " + clientId);
+        }
+        Object events = jwt.getClaims().get("events");
+        if (!(events instanceof Map<?, ?> eventMap) || !eventMap.containsKey(BACKCHANNEL_LOGOUT_EVENT)) {
+            return invalidLogoutToken("missing back-channel logout event");
+        }
+        if (jwt.getClaims().containsKey("nonce")) {
+            return invalidLogoutToken("nonce is not allowed");
+        }
+        if (jwt.getSubject() == null && jwt.getClaimAsString("sid") == null) {
+            return invalidLogoutToken("neither sub nor sid present");
+        }
+        return OAuth2TokenValidatorResult.success();
+    }
+
+    private static OAuth2TokenValidatorResult invalidLogoutToken(String reason) {
+        return OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Logout token: " + reason, null));
+    }
+
     /**
      * Exchange Keycloak user credentials for token
      * Used during login to verify user against Keycloak
@@ -97,15 +231,63 @@ public class KeycloakTokenProvider {
         }
     }
 
+    /**
+     * Verify a Keycloak access token and resolve its username in a single step.
+     * In local mode no network call is made unless the JWKS needs refreshing.
+     */
+    public VerifiedToken verifyToken(String token) {
+        if (isLocalValidation()) {
+            try {
+                Jwt jwt = jwtDecoder.decode(token);
+                return new VerifiedToken(
+                    jwt.getClaimAsString("preferred_username"),
+                    jwt.getClaims(),
+                    jwt.getExpiresAt()
+                );
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to verify Keycloak token: " + e.getMessage());
+            }
+        }
+
+        try {
+            JsonNode userInfo = getUserInfoFromKeycloak(token);
+            Map<String, Object> claims = objectMapper.convertValue(userInfo, new TypeReference<Map<String, Object>>() {});
+            return new VerifiedToken(
+                userInfo.get("preferred_username").asText(),
+                claims,
+                readExpiration(token)
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to verify Keycloak token: " + e.getMessage());
+        }
+    }
+
     /**
      * Verify token is valid in Keycloak
      */
     public boolean validateKeycloakToken(String token) {
         try {
-            getUserInfoFromKeycloak(token);
+            verifyToken(token);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
+
+    private boolean isLocalValidation() {
+        return "local".equalsIgnoreCase(tokenValidation);
+    }
+
+    /**
+     * Reads the exp claim without verifying the signature; only used once
+     * Keycloak has already accepted the token through userinfo.
+     */
+    private Instant readExpiration(String token) {
+        try {
+            Date exp = JWTParser.parse(token).getJWTClaimsSet().getExpirationTime();
+            return exp != null ? exp.toInstant() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
 }
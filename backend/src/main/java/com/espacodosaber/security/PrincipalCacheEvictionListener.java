@@ -0,0 +1,29 @@
+package com.espacodosaber.security;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.espacodosaber.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes principal and user card invalidations whenever a User row is
+ * updated or removed, so role, active and name changes are picked up on the
+ * next request on every node.
+ */
+@Component
+public class PrincipalCacheEvictionListener {
+
+    @Lazy
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        invalidationBus.publish(CacheInvalidationBus.PRINCIPALS, user.getUsername());
+        invalidationBus.publish(CacheInvalidationBus.USER_CARDS, String.valueOf(user.getId()));
+    }
+}
@@ -1,9 +1,12 @@
 package com.espacodosaber.security;
 
 import com.espacodosaber.model.User;
+import com.espacodosaber.repository.UserAuthProjection;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,16 +14,24 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.util.Collection;
 import java.util.Collections;
 
-@Data
+/**
+ * Immutable principal. Instances built from a UserAuthProjection carry no
+ * email/password and are safe to share through the principal cache.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
 @AllArgsConstructor
 public class UserDetailsImpl implements UserDetails {
 
-    private Long id;
-    private String username;
-    private String email;
+    private final Long id;
+    private final String username;
+    private final String email;
     @JsonIgnore
-    private String password;
-    private String role;
+    @ToString.Exclude
+    private final String password;
+    private final String role;
+    private final boolean active;
 
     public static UserDetailsImpl build(User user) {
         return new UserDetailsImpl(
@@ -28,7 +39,19 @@ public class UserDetailsImpl implements UserDetails {
                 user.getUsername(),
                 user.getEmail(),
                 user.getPassword(),
-                user.getRole().name()
+                user.getRole().name(),
+                !Boolean.FALSE.equals(user.getActive())
+        );
+    }
+
+    public static UserDetailsImpl snapshot(UserAuthProjection user) {
+        return new UserDetailsImpl(
+                user.getId(),
+                user.getUsername(),
+                null,
+                null,
+                user.getRole().name(),
+                !Boolean.FALSE.equals(user.getActive())
         );
     }
 
@@ -54,6 +77,6 @@ public class UserDetailsImpl implements UserDetails {
 
     @Override
     public boolean isEnabled() {
-        return true;
+        return active;
     }
 }
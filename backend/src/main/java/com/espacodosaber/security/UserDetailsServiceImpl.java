@@ -1,19 +1,57 @@
 package com.espacodosaber.security;
 
+import com.espacodosaber.cache.CacheInvalidationBus;
 import com.espacodosaber.model.User;
 import com.espacodosaber.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.security.Principal;
+import java.time.Duration;
+
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Value("${auth.principal-cache.max-size:10000}")
+    private long principalCacheMaxSize;
+
+    @Value("${auth.principal-cache.ttl-ms:60000}")
+    private long principalCacheTtlMs;
+
+    private Cache<String, UserDetailsImpl> principalCache;
+
+    @PostConstruct
+    public void initPrincipalCache() {
+        this.principalCache = Caffeine.newBuilder()
+                .maximumSize(principalCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(principalCacheTtlMs))
+                .build();
+        invalidationBus.subscribe(CacheInvalidationBus.PRINCIPALS, username -> {
+            if (CacheInvalidationBus.ALL.equals(username)) {
+                evictAllPrincipals();
+            } else {
+                evictPrincipal(username);
+            }
+        });
+    }
+
+    /**
+     * Full user load including the password hash, used for credential checks.
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
@@ -21,4 +59,37 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return UserDetailsImpl.build(user);
     }
+
+    /**
+     * Principal for an already authenticated token (id, username, role, active).
+     * Served from the principal cache; a miss runs a projection query only.
+     */
+    public UserDetailsImpl loadPrincipal(String username) throws UsernameNotFoundException {
+        return principalCache.get(username, key -> userRepository.findAuthProjectionByUsername(key)
+                .map(UserDetailsImpl::snapshot)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + key)));
+    }
+
+    /**
+     * Id of the authenticated user, taken from the principal when it already
+     * carries it (JWT filter, STOMP CONNECT) and from the cache otherwise.
+     */
+    public Long resolveUserId(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof UserDetailsImpl userDetails) {
+            return userDetails.getId();
+        }
+        return loadPrincipal(principal.getName()).getId();
+    }
+
+    /**
+     * Local eviction only; publish CacheInvalidationBus.PRINCIPALS to reach every node.
+     */
+    public void evictPrincipal(String username) {
+        principalCache.invalidate(username);
+    }
+
+    public void evictAllPrincipals() {
+        principalCache.invalidateAll();
+    }
 }
@@ -0,0 +1,10 @@
+package com.espacodosaber.security;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Result of a successful Keycloak token verification: the resolved username,
+ * the verified claim set and the token's own expiry.
+ */
+public record VerifiedToken(String username, Map<String, Object> claims, Instant expiresAt) {}
@@ -0,0 +1,219 @@
+package com.espacodosaber.security;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Verified-token cache in front of KeycloakTokenProvider.
+ *
+ * Entries are keyed by the SHA-256 of the bearer token (the raw token is never
+ * kept as a key), live until the token's own exp (capped by max-ttl) and are
+ * bounded in size with Caffeine's W-TinyLFU eviction. Failed verifications are
+ * never cached.
+ *
+ * Back-channel logouts are kept in a deny-list of sessions (or subjects) for
+ * revocation-ttl-ms, so a still-valid token of a logged-out session is not
+ * simply verified and cached again on its next request.
+ */
+@Log4j2
+@Component
+public class VerifiedTokenCache {
+
+    @Autowired
+    private KeycloakTokenProvider keycloakTokenProvider;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Value("${keycloak.token-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${keycloak.token-cache.max-ttl-ms:300000}")
+    private long maxTtlMs;
+
+    // Should exceed the realm's access token lifespan
+    @Value("${keycloak.token-cache.revocation-ttl-ms:3600000}")
+    private long revocationTtlMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, VerifiedToken> cache;
+
+    // "sid:<session>" / "sub:<subject>" -> logout time; tokens issued up to then are rejected
+    private Cache<String, Instant> revoked;
+
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry(Duration.ofMillis(maxTtlMs)))
+                .recordStats()
+                .build();
+        this.revoked = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(revocationTtlMs))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "keycloak.verified-tokens");
+        Gauge.builder("keycloak.revoked-sessions", revoked, Cache::estimatedSize)
+                .description("Logged-out sessions and subjects whose tokens are rejected")
+                .register(meterRegistry);
+        invalidationBus.subscribe(CacheInvalidationBus.TOKENS, this::applyInvalidation);
+    }
+
+    /**
+     * Returns the cached verification result, verifying through Keycloak on a
+     * miss. Tokens of a logged-out session or subject are rejected even while
+     * their signature is still valid.
+     */
+    public VerifiedToken verify(String token) {
+        String key = hash(token);
+        VerifiedToken verified = cache.get(key, k -> keycloakTokenProvider.verifyToken(token));
+        if (isRevoked(verified)) {
+            cache.invalidate(key);
+            throw new RuntimeException("Token has been revoked");
+        }
+        return verified;
+    }
+
+    /**
+     * Handles an OIDC back-channel logout token: once its signature, issuer and
+     * audience are verified, every token of the logged-out session (or subject)
+     * issued before now is revoked on all nodes.
+     *
+     * @throws RuntimeException when the logout token is not valid
+     */
+    public void invalidateForLogout(String logoutToken) {
+        Map<String, Object> claims = keycloakTokenProvider.verifyLogoutToken(logoutToken);
+        long revokedAt = Instant.now().getEpochSecond();
+        Object sessionId = claims.get("sid");
+        if (sessionId != null) {
+            invalidationBus.publish(CacheInvalidationBus.TOKENS, "sid:" + sessionId + "@" + revokedAt);
+        } else {
+            invalidationBus.publish(CacheInvalidationBus.TOKENS, "sub:" + claims.get("sub") + "@" + revokedAt);
+        }
+    }
+
+    /**
+     * Applies a bus event: "sub:<subject>@<epochSecond>",
+     * "sid:<session>@<epochSecond>" or ALL.
+     */
+    private void applyInvalidation(String key) {
+        if (key.startsWith("sub:") || key.startsWith("sid:")) {
+            int at = key.lastIndexOf('@');
+            String claimKey = at > 0 ? key.substring(0, at) : key;
+            Instant revokedAt = at > 0
+                    ? Instant.ofEpochSecond(Long.parseLong(key.substring(at + 1)))
+                    : Instant.now();
+            revoked.asMap().merge(claimKey, revokedAt, (a, b) -> a.isAfter(b) ? a : b);
+            removeByClaim(claimKey.substring(0, 3), claimKey.substring(4));
+        } else {
+            cache.invalidateAll();
+        }
+    }
+
+    private boolean isRevoked(VerifiedToken verified) {
+        if (revoked.estimatedSize() == 0) {
+            return false;
+        }
+        Instant issuedAt = issuedAt(verified);
+        return revokedBefore(revoked.getIfPresent("sid:" + verified.claims().get("sid")), issuedAt)
+                || revokedBefore(revoked.getIfPresent("sub:" + verified.claims().get("sub")), issuedAt);
+    }
+
+    private static boolean revokedBefore(Instant revokedAt, Instant issuedAt) {
+        // tokens without iat cannot be told apart from later logins: revoke them too
+        return revokedAt != null && (issuedAt == null || !issuedAt.isAfter(revokedAt));
+    }
+
+    private static Instant issuedAt(VerifiedToken verified) {
+        Object iat = verified.claims().get("iat");
+        if (iat instanceof Instant instant) {
+            return instant;
+        }
+        if (iat instanceof Date date) {
+            return date.toInstant();
+        }
+        if (iat instanceof Number seconds) {
+            return Instant.ofEpochSecond(seconds.longValue());
+        }
+        return null;
+    }
+
+    private void removeByClaim(String claim, String value) {
+        cache.asMap().values().removeIf(verified -> Objects.equals(value, String.valueOf(verified.claims().get(claim))));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Hit, miss and eviction counters, also published as the
+     * keycloak.verified-tokens cache metrics.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        private final Duration maxTtl;
+
+        TokenExpiry(Duration maxTtl) {
+            this.maxTtl = maxTtl;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            if (value.expiresAt() == null) {
+                return maxTtl.toNanos();
+            }
+            Duration untilExp = Duration.between(Instant.now(), value.expiresAt());
+            if (untilExp.isNegative()) {
+                return 0L;
+            }
+            return Math.min(untilExp.toNanos(), maxTtl.toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
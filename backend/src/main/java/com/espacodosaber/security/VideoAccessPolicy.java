@@ -0,0 +1,49 @@
+package com.espacodosaber.security;
+
+import com.espacodosaber.model.Role;
+import com.espacodosaber.model.Video;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+/**
+ * Who may watch a video: public videos are open to everyone; a private one
+ * only to signed-in students, its teacher and admins.
+ *
+ * The media routes are permitAll so players can fetch public videos without
+ * a token; the controllers ask this policy for everything else.
+ */
+@Component
+public class VideoAccessPolicy {
+
+    public enum Decision {
+        ALLOWED,
+        UNAUTHENTICATED,
+        FORBIDDEN;
+
+        /**
+         * HTTP status to answer with when access is not allowed.
+         */
+        public int status() {
+            return this == UNAUTHENTICATED ? 401 : 403;
+        }
+    }
+
+    public Decision check(Video video, Authentication authentication) {
+        if (Boolean.TRUE.equals(video.getIsPublic())) {
+            return Decision.ALLOWED;
+        }
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken
+                || !(authentication.getPrincipal() instanceof UserDetailsImpl user)) {
+            return Decision.UNAUTHENTICATED;
+        }
+        if (Role.ADMIN.name().equals(user.getRole()) || Role.STUDENT.name().equals(user.getRole())) {
+            return Decision.ALLOWED;
+        }
+        if (video.getTeacher() != null && user.getId().equals(video.getTeacher().getId())) {
+            return Decision.ALLOWED;
+        }
+        return Decision.FORBIDDEN;
+    }
+}
@@ -1,5 +1,6 @@
 package com.espacodosaber.service;
 
+import com.espacodosaber.cache.CacheInvalidationBus;
 import com.espacodosaber.dto.AuthResponse;
 import com.espacodosaber.dto.LoginRequest;
 import com.espacodosaber.dto.RegisterRequest;
@@ -30,6 +31,9 @@ public class AuthService {
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
     public AuthResponse login(LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
@@ -69,6 +73,7 @@ public class AuthService {
         user.setRole(registerRequest.getRole());
 
         User savedUser = userRepository.save(user);
+        invalidationBus.publish(CacheInvalidationBus.PRINCIPALS, savedUser.getUsername());
 
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,34 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.espacodosaber.model.Video;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the video caches of every node in line with the videos table: new
+ * videos invalidate the public pages, updates (including visibility changes)
+ * and deletes also drop the cached video and its presigned URLs.
+ */
+@Component
+public class CatalogueCacheEvictionListener {
+
+    @Lazy
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @PostPersist
+    public void onVideoCreated(Video video) {
+        invalidationBus.publish(CacheInvalidationBus.PUBLIC_PAGES, CacheInvalidationBus.ALL);
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onVideoChanged(Video video) {
+        invalidationBus.publish(CacheInvalidationBus.VIDEOS, String.valueOf(video.getId()));
+    }
+}
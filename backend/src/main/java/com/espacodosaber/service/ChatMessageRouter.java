@@ -0,0 +1,122 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.dto.ChatMessageView;
+import com.espacodosaber.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers a chat message only to the sessions that should see it:
+ * direct messages go to the receiver's and sender's user queues
+ * (/user/queue/messages), video messages to the video's room
+ * (/topic/video.{videoId}), and messages with neither to the public lobby
+ * (/topic/messages).
+ *
+ * Payloads are ChatMessageViews in JSON. A client that sends
+ * "accept-content-type: application/cbor" on CONNECT gets its user queue
+ * messages in CBOR instead, per session, so the same user's other tabs and
+ * devices keep their own format; rooms are shared and stay JSON.
+ */
+@Service
+public class ChatMessageRouter {
+
+    public static final String USER_QUEUE = "/queue/messages";
+    public static final String LOBBY_TOPIC = "/topic/messages";
+    public static final String ACK_QUEUE = "/queue/chat.acks";
+
+    public static final MimeType CBOR = new MimeType("application", "cbor");
+    private static final String ACCEPT_CONTENT_TYPE = "accept-content-type";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ChatSubscriptionRegistry subscriptionRegistry;
+
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    @Autowired
+    private SimpUserRegistry userRegistry;
+
+    // STOMP session id -> preferred content type, for sessions that asked for one
+    private final Map<String, MimeType> sessionContentTypes = new ConcurrentHashMap<>();
+
+    public void route(ChatMessage message, ChatMessageView view) {
+        if (message.getReceiver() != null) {
+            sendToUser(message.getReceiver().getUsername(), USER_QUEUE, view);
+            // echo to the sender's other sessions (tabs, devices)
+            if (!message.getReceiver().getId().equals(message.getSender().getId())) {
+                sendToUser(message.getSender().getUsername(), USER_QUEUE, view);
+            }
+        } else if (message.getVideoId() != null) {
+            String room = ChatSubscriptionRegistry.videoRoom(message.getVideoId());
+            // with a relay the room may only have subscribers on other nodes
+            if ("relay".equalsIgnoreCase(brokerMode) || subscriptionRegistry.hasSubscribers(room)) {
+                messagingTemplate.convertAndSend(room, view);
+            }
+        } else {
+            messagingTemplate.convertAndSend(LOBBY_TOPIC, view);
+        }
+    }
+
+    /**
+     * Tells the sender a message is persisted (ack-after-flush durability).
+     */
+    public void acknowledge(ChatMessage message) {
+        sendToUser(message.getSender().getUsername(), ACK_QUEUE, Map.of("id", String.valueOf(message.getId())));
+    }
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String accept = accessor.getFirstNativeHeader(ACCEPT_CONTENT_TYPE);
+        if (accessor.getSessionId() != null && accept != null && CBOR.isCompatibleWith(MimeType.valueOf(accept))) {
+            sessionContentTypes.put(accessor.getSessionId(), CBOR);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessionContentTypes.remove(event.getSessionId());
+    }
+
+    /**
+     * When every session of the user takes JSON this is a single user
+     * destination send. Otherwise each session gets its own copy in its own
+     * content type, addressed by session id. Sessions on other nodes (relay
+     * mode) get JSON, since their preference is only known where they connected.
+     */
+    private void sendToUser(String username, String destination, Object payload) {
+        SimpUser user = userRegistry.getUser(username);
+        if (user == null || user.getSessions().stream().noneMatch(s -> sessionContentTypes.containsKey(s.getId()))) {
+            messagingTemplate.convertAndSendToUser(username, destination, payload);
+            return;
+        }
+        for (SimpSession session : user.getSessions()) {
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(session.getId());
+            MimeType contentType = sessionContentTypes.get(session.getId());
+            if (contentType != null) {
+                headers.setContentType(contentType);
+            }
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(username, destination, payload, headers.getMessageHeaders());
+        }
+    }
+}
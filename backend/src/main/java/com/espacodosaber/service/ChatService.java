@@ -1,64 +1,217 @@
 package com.espacodosaber.service;
 
+import com.espacodosaber.dto.ChatMessageView;
+import com.espacodosaber.dto.ChatPage;
+import com.espacodosaber.dto.UserCard;
 import com.espacodosaber.model.ChatMessage;
 import com.espacodosaber.model.User;
 import com.espacodosaber.repository.ChatMessageRepository;
-import com.espacodosaber.repository.UserRepository;
+import com.espacodosaber.security.UserDetailsImpl;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+@Log4j2
 @Service
 public class ChatService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // chat_messages.message column length
+    private static final int MAX_MESSAGE_LENGTH = 2000;
+
     @Autowired
     private ChatMessageRepository chatMessageRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private SnowflakeIdGenerator idGenerator;
+
+    @Autowired
+    private ChatWriteBehindBuffer writeBehindBuffer;
+
+    @Autowired
+    private UnreadCounters unreadCounters;
+
+    @Autowired
+    private UserCardCache userCardCache;
+
+    /**
+     * Stamps the message with a Snowflake id and hands it to the write-behind
+     * buffer; the returned message can be broadcast right away. The sender comes
+     * from the authenticated principal, the receiver from the user card cache.
+     * The message is validated here, before it is broadcast, so the database
+     * never rejects a message its recipients have already seen.
+     */
+    public ChatMessage sendMessage(UserDetailsImpl sender, Long receiverId, String message, Long videoId) {
+        if (message == null || message.isBlank()) {
+            throw new IllegalArgumentException("Message is required");
+        }
+        if (message.length() > MAX_MESSAGE_LENGTH) {
+            throw new IllegalArgumentException("Message is longer than " + MAX_MESSAGE_LENGTH + " characters");
+        }
 
-    public ChatMessage sendMessage(String senderUsername, Long receiverId, String message, Long videoId) {
-        User sender = userRepository.findByUsername(senderUsername)
-                .orElseThrow(() -> new RuntimeException("Sender not found"));
-        
         User receiver = null;
         if (receiverId != null) {
-            receiver = userRepository.findById(receiverId)
-                    .orElseThrow(() -> new RuntimeException("Receiver not found"));
+            UserCard card = userCardCache.get(receiverId);
+            if (card == null) {
+                throw new RuntimeException("Receiver not found");
+            }
+            receiver = ChatWriteBehindBuffer.userRef(receiverId, card.username());
         }
 
         ChatMessage chatMessage = new ChatMessage();
-        chatMessage.setSender(sender);
+        chatMessage.setId(idGenerator.nextId());
+        chatMessage.setSender(ChatWriteBehindBuffer.userRef(sender.getId(), sender.getUsername()));
         chatMessage.setReceiver(receiver);
         chatMessage.setMessage(message);
         chatMessage.setVideoId(videoId);
+        chatMessage.setSentAt(LocalDateTime.now());
+        if (receiverId != null) {
+            chatMessage.setConversationKey(ChatMessage.conversationKey(sender.getId(), receiverId));
+        }
+
+        writeBehindBuffer.append(chatMessage);
+        if (receiverId != null && !receiverId.equals(sender.getId())) {
+            unreadCounters.increment(receiverId);
+        }
+        return chatMessage;
+    }
+
+    /**
+     * Direct messages between two users, newest first, keyset-paginated on
+     * (sent_at, id) within the conversation key.
+     *
+     * @param before cursor returned as nextCursor by the previous page, or null
+     */
+    public ChatPage getConversation(Long userId, Long otherUserId, String before, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells whether there is a next page
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+        String key = ChatMessage.conversationKey(userId, otherUserId);
+
+        List<ChatMessage> rows;
+        if (before == null || before.isBlank()) {
+            rows = chatMessageRepository.findConversationFirstPage(key, fetch);
+        } else {
+            String[] cursor = decodeCursor(before);
+            rows = chatMessageRepository.findConversationPageBefore(
+                    key, LocalDateTime.parse(cursor[0]), Long.parseLong(cursor[1]), fetch);
+        }
+
+        if (rows.size() <= pageSize) {
+            return new ChatPage(toViews(rows), null);
+        }
+        List<ChatMessage> items = rows.subList(0, pageSize);
+        ChatMessage last = items.get(pageSize - 1);
+        return new ChatPage(toViews(items), encodeCursor(last.getSentAt(), last.getId()));
+    }
+
+    /**
+     * Fills conversation_key for direct messages stored before the column existed.
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillConversationKeys() {
+        int updated = chatMessageRepository.backfillConversationKeys();
+        if (updated > 0) {
+            log.info("Backfilled conversation_key on " + updated + " chat messages");
+        }
+    }
+
+    private static String encodeCursor(LocalDateTime sentAt, Long id) {
+        String raw = sentAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        return chatMessageRepository.save(chatMessage);
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
-    public List<ChatMessage> getConversation(String username, Long otherUserId) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        User otherUser = userRepository.findById(otherUserId)
-                .orElseThrow(() -> new RuntimeException("Other user not found"));
+    public List<ChatMessageView> getUnreadMessages(Long userId) {
+        return toViews(chatMessageRepository.findByReceiverIdAndIsReadFalse(userId));
+    }
 
-        return chatMessageRepository.findBySenderOrReceiverOrderBySentAtDesc(user, otherUser);
+    public ChatMessageView toView(ChatMessage message) {
+        return toViews(List.of(message)).get(0);
     }
 
-    public List<ChatMessage> getUnreadMessages(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    /**
+     * Maps messages to their wire format, resolving all senders and receivers
+     * through the user card cache at once. Only the ids of the (lazy) User
+     * associations are read, so no User row is loaded.
+     */
+    public List<ChatMessageView> toViews(List<ChatMessage> messages) {
+        Set<Long> userIds = new HashSet<>();
+        for (ChatMessage message : messages) {
+            userIds.add(message.getSender().getId());
+            if (message.getReceiver() != null) {
+                userIds.add(message.getReceiver().getId());
+            }
+        }
+        Map<Long, UserCard> cards = userCardCache.getAll(userIds);
+
+        return messages.stream().map(message -> {
+            Long senderId = message.getSender().getId();
+            Long receiverId = message.getReceiver() != null ? message.getReceiver().getId() : null;
+            return new ChatMessageView(
+                    message.getId(),
+                    senderId,
+                    displayName(cards.get(senderId)),
+                    receiverId,
+                    receiverId != null ? displayName(cards.get(receiverId)) : null,
+                    message.getMessage(),
+                    message.getVideoId(),
+                    message.getSentAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                    Boolean.TRUE.equals(message.getIsRead()));
+        }).toList();
+    }
+
+    private static String displayName(UserCard card) {
+        return card == null ? null : card.displayName();
+    }
+
+    public long getUnreadCount(Long userId) {
+        return unreadCounters.get(userId);
+    }
 
-        return chatMessageRepository.findByReceiverAndIsReadFalse(user);
+    @Transactional
+    public void markAsRead(Long userId, Long messageId) {
+        unreadCounters.decrement(userId, chatMessageRepository.markRead(messageId, userId));
     }
 
-    public void markAsRead(Long messageId) {
-        ChatMessage message = chatMessageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found"));
-        
-        message.setIsRead(true);
-        chatMessageRepository.save(message);
+    /**
+     * Marks the conversation with otherUserId read up to and including
+     * upToMessageId, in a single UPDATE.
+     *
+     * @return number of messages marked read
+     */
+    @Transactional
+    public int markConversationRead(Long userId, Long otherUserId, Long upToMessageId) {
+        int updated = chatMessageRepository.markConversationRead(
+                ChatMessage.conversationKey(userId, otherUserId), userId, upToMessageId);
+        unreadCounters.decrement(userId, updated);
+        return updated;
     }
 }
@@ -0,0 +1,87 @@
+package com.espacodosaber.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks which STOMP sessions of this node are subscribed to per-video chat
+ * rooms (/topic/video.{videoId}), so the router can skip rooms nobody is in
+ * (simple broker only) and room sizes can be observed. Delivery itself is left to the broker, which
+ * only fans a message out to the room's subscribers.
+ *
+ * Room sizes only count this replica's sessions. In relay mode other
+ * replicas hold members of the same room, so sizes are per replica and the
+ * router never skips a room based on them.
+ */
+@Component
+public class ChatSubscriptionRegistry {
+
+    public static final String VIDEO_ROOM_PREFIX = "/topic/video.";
+
+    // sessionId -> (subscriptionId -> destination)
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> roomSizes = new ConcurrentHashMap<>();
+
+    public static String videoRoom(Long videoId) {
+        return VIDEO_ROOM_PREFIX + videoId;
+    }
+
+    public boolean hasSubscribers(String destination) {
+        AtomicInteger size = roomSizes.get(destination);
+        return size != null && size.get() > 0;
+    }
+
+    public int roomSize(String destination) {
+        AtomicInteger size = roomSizes.get(destination);
+        return size == null ? 0 : size.get();
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(VIDEO_ROOM_PREFIX)
+                || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), destination);
+        if (previous != null) {
+            leave(previous);
+        }
+        roomSizes.computeIfAbsent(destination, d -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = sessions.get(accessor.getSessionId());
+        if (subscriptions == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        String destination = subscriptions.remove(accessor.getSubscriptionId());
+        if (destination != null) {
+            leave(destination);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::leave);
+        }
+    }
+
+    private void leave(String destination) {
+        roomSizes.computeIfPresent(destination, (d, size) -> size.decrementAndGet() <= 0 ? null : size);
+    }
+}
@@ -0,0 +1,462 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.model.ChatMessage;
+import com.espacodosaber.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for chat messages.
+ *
+ * Messages already carry their Snowflake id, so they can be broadcast before
+ * they reach the database. append() writes the message to an on-disk journal
+ * segment and puts it in a bounded ring buffer. A background drainer writes
+ * the buffer in multi-row INSERT batches, then deletes the journal segments it
+ * covered. On startup, any segments left behind by a crash are replayed. Ids
+ * that already exist are skipped (ON CONFLICT on Postgres; on H2 the batch
+ * falls back to row by row and a duplicate key counts as already written),
+ * so replaying is safe.
+ *
+ * Durability (chat.persistence.durability):
+ * fire-and-forget: the sender gets nothing beyond the broadcast.
+ * ack-after-flush: the sender gets {id} on /user/queue/chat.acks once the
+ * message is in the database.
+ *
+ * When the ring buffer is full, the caller writes its message synchronously.
+ * A message rejected by the database is counted and never acknowledged.
+ * Counters are exported as chat.persistence.* meters.
+ */
+@Log4j2
+@Service
+public class ChatWriteBehindBuffer {
+
+    private static final String COLUMNS =
+            "chat_messages (id, sender_id, receiver_id, message, sent_at, is_read, video_id, conversation_key)";
+    private static final String ROW = "(?, ?, ?, ?, ?, false, ?, ?)";
+
+    public enum Durability { FIRE_AND_FORGET, ACK_AFTER_FLUSH }
+
+    record JournalEntry(long id, Long senderId, Long receiverId, String message, Long videoId, String sentAt) {}
+
+    public record Stats(long appended, long written, long batches, long overflowWrites,
+                        long rejected, long replayed, int pending) {}
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ChatMessageRouter chatMessageRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.persistence.capacity:65536}")
+    private int capacity;
+
+    @Value("${chat.persistence.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chat.persistence.durability:fire-and-forget}")
+    private String durabilityMode;
+
+    @Value("${chat.persistence.journal.enabled:true}")
+    private boolean journalEnabled;
+
+    @Value("${chat.persistence.journal.dir:data/chat-journal}")
+    private String journalDir;
+
+    @Value("${chat.persistence.journal.fsync:false}")
+    private boolean journalFsync;
+
+    private ArrayBlockingQueue<ChatMessage> ring;
+    private Durability durability;
+    private boolean postgres;
+
+    // failed batches, written first on the next flush
+    private final List<ChatMessage> retry = new ArrayList<>();
+    // drained batch being written, or a copy of retry after a failure; read by pendingFor
+    private volatile List<ChatMessage> inFlight = List.of();
+
+    private final Object journalLock = new Object();
+    private Path journalRoot;
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentBytes;
+    private long segmentCounter;
+    private final List<Path> sealedSegments = new ArrayList<>();
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong overflowWrites = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws Exception {
+        this.ring = new ArrayBlockingQueue<>(capacity);
+        this.durability = "ack-after-flush".equalsIgnoreCase(durabilityMode)
+                ? Durability.ACK_AFTER_FLUSH : Durability.FIRE_AND_FORGET;
+        try (Connection connection = dataSource.getConnection()) {
+            this.postgres = !"H2".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        }
+        counter("appended", appended);
+        counter("written", written);
+        counter("overflow-writes", overflowWrites);
+        counter("rejected", rejected);
+        counter("replayed", replayed);
+        FunctionCounter.builder("chat.persistence.batches", batches, AtomicLong::get)
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.pending", this, buffer -> buffer.ring.size() + buffer.retry.size())
+                .description("Chat messages journaled but not yet in the database")
+                .register(meterRegistry);
+        if (journalEnabled) {
+            this.journalRoot = Paths.get(journalDir);
+            Files.createDirectories(journalRoot);
+            replayJournal();
+            synchronized (journalLock) {
+                openSegment();
+            }
+        }
+    }
+
+    /**
+     * Journals and enqueues a message. Only blocks when the buffer is full.
+     */
+    public void append(ChatMessage message) {
+        appended.incrementAndGet();
+        boolean queued;
+        synchronized (journalLock) {
+            journal(message);
+            queued = ring.offer(message);
+        }
+        if (!queued) {
+            overflowWrites.incrementAndGet();
+            List<ChatMessage> persisted;
+            synchronized (this) {
+                persisted = writeRows(List.of(message));
+            }
+            acknowledge(persisted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.persistence.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush chat messages: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() throws IOException {
+        flush();
+        synchronized (journalLock) {
+            if (segment != null) {
+                segment.close();
+                if (segmentBytes == 0) {
+                    Files.deleteIfExists(segmentPath);
+                }
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        List<ChatMessage> pending;
+        synchronized (journalLock) {
+            pending = new ArrayList<>(retry);
+            retry.clear();
+            // While a failed batch is retried the ring is left alone, so retry never
+            // grows beyond one drained ring; a full ring makes senders write synchronously.
+            if (pending.isEmpty()) {
+                // everything journaled so far is either in the ring or already written
+                rotateSegment();
+                ring.drainTo(pending);
+            }
+            inFlight = pending;
+        }
+        if (pending.isEmpty()) {
+            deleteSealedSegments();
+            return;
+        }
+
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<ChatMessage> chunk = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            List<ChatMessage> persisted;
+            try {
+                persisted = writeRows(chunk);
+            } catch (Exception e) {
+                retry.addAll(pending.subList(from, pending.size()));
+                inFlight = new ArrayList<>(retry);
+                log.error("Chat batch insert failed, " + retry.size() + " messages kept for retry: " + e.getMessage());
+                return;
+            }
+            acknowledge(persisted);
+        }
+        inFlight = List.of();
+        deleteSealedSegments();
+    }
+
+    /**
+     * Messages to receiverId that are buffered or being written, so not yet
+     * seen by a COUNT on chat_messages. Rows that reach the database while
+     * this runs may be counted here as well.
+     */
+    public long pendingFor(Long receiverId) {
+        long count = 0;
+        for (ChatMessage message : ring) {
+            if (isFor(message, receiverId)) {
+                count++;
+            }
+        }
+        for (ChatMessage message : inFlight) {
+            if (isFor(message, receiverId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isFor(ChatMessage message, Long receiverId) {
+        return message.getReceiver() != null && receiverId.equals(message.getReceiver().getId());
+    }
+
+    private void counter(String outcome, AtomicLong value) {
+        FunctionCounter.builder("chat.persistence.messages", value, AtomicLong::get)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public Stats stats() {
+        return new Stats(appended.get(), written.get(), batches.get(), overflowWrites.get(),
+                rejected.get(), replayed.get(), ring.size() + retry.size());
+    }
+
+    /**
+     * Inserts the rows, falling back to row by row when the batch violates a
+     * constraint.
+     *
+     * @return the rows now in the database (inserted, or already there);
+     *         only these are acknowledged
+     */
+    private List<ChatMessage> writeRows(List<ChatMessage> rows) {
+        List<ChatMessage> persisted;
+        try {
+            jdbcTemplate.update(insertSql(rows.size()), parameters(rows));
+            persisted = rows;
+        } catch (DataIntegrityViolationException e) {
+            // a bad row must not block the whole batch
+            persisted = new ArrayList<>(rows.size());
+            for (ChatMessage row : rows) {
+                try {
+                    jdbcTemplate.update(insertSql(1), parameters(List.of(row)));
+                    persisted.add(row);
+                } catch (DuplicateKeyException duplicate) {
+                    // written before a crash and replayed from the journal (H2 has no ON CONFLICT here)
+                    persisted.add(row);
+                } catch (DataIntegrityViolationException rowError) {
+                    rejected.incrementAndGet();
+                    log.warn("Dropping chat message " + row.getId() + ": " + rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        written.addAndGet(persisted.size());
+        batches.incrementAndGet();
+        return persisted;
+    }
+
+    private String insertSql(int rows) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < rows; i++) {
+            values.add(ROW);
+        }
+        return "INSERT INTO " + COLUMNS + " VALUES " + values + (postgres ? " ON CONFLICT (id) DO NOTHING" : "");
+    }
+
+    private Object[] parameters(List<ChatMessage> rows) {
+        Object[] params = new Object[rows.size() * 7];
+        int i = 0;
+        for (ChatMessage row : rows) {
+            params[i++] = row.getId();
+            params[i++] = row.getSender().getId();
+            params[i++] = row.getReceiver() != null ? row.getReceiver().getId() : null;
+            params[i++] = row.getMessage();
+            params[i++] = Timestamp.valueOf(row.getSentAt());
+            params[i++] = row.getVideoId();
+            params[i++] = row.getConversationKey();
+        }
+        return params;
+    }
+
+    private void acknowledge(List<ChatMessage> rows) {
+        if (durability != Durability.ACK_AFTER_FLUSH) {
+            return;
+        }
+        for (ChatMessage row : rows) {
+            if (row.getSender().getUsername() != null) {
+                chatMessageRouter.acknowledge(row);
+            }
+        }
+    }
+
+    private void journal(ChatMessage message) {
+        if (segment == null) {
+            return;
+        }
+        JournalEntry entry = new JournalEntry(
+                message.getId(),
+                message.getSender().getId(),
+                message.getReceiver() != null ? message.getReceiver().getId() : null,
+                message.getMessage(),
+                message.getVideoId(),
+                message.getSentAt().toString());
+        try {
+            byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            if (journalFsync) {
+                segment.force(false);
+            }
+            segmentBytes += line.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to journal chat message", e);
+        }
+    }
+
+    private void openSegment() {
+        try {
+            segmentPath = journalRoot.resolve("chat-" + System.currentTimeMillis() + "-" + (segmentCounter++) + ".log");
+            segment = FileChannel.open(segmentPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            segmentBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open chat journal segment", e);
+        }
+    }
+
+    private void rotateSegment() {
+        if (segment == null || segmentBytes == 0) {
+            return;
+        }
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            log.warn("Failed to close chat journal segment " + segmentPath + ": " + e.getMessage());
+        }
+        sealedSegments.add(segmentPath);
+        openSegment();
+    }
+
+    private void deleteSealedSegments() {
+        if (!retry.isEmpty()) {
+            return;
+        }
+        for (Path sealed : sealedSegments) {
+            try {
+                Files.deleteIfExists(sealed);
+            } catch (IOException e) {
+                log.warn("Failed to delete chat journal segment " + sealed + ": " + e.getMessage());
+            }
+        }
+        sealedSegments.clear();
+    }
+
+    private void replayJournal() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(journalRoot, "chat-*.log")) {
+            stream.forEach(segments::add);
+        }
+        if (segments.isEmpty()) {
+            return;
+        }
+        segments.sort(null);
+
+        List<ChatMessage> messages = new ArrayList<>();
+        for (Path path : segments) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    messages.add(fromJournal(objectMapper.readValue(line, JournalEntry.class)));
+                } catch (IOException e) {
+                    // torn last line of a crashed write
+                    log.warn("Skipping unreadable chat journal line in " + path);
+                }
+            }
+        }
+
+        log.info("Replaying " + messages.size() + " chat messages from " + segments.size() + " journal segments");
+        sealedSegments.addAll(segments);
+        retry.addAll(messages);
+        replayed.addAndGet(messages.size());
+        flush();
+    }
+
+    private static ChatMessage fromJournal(JournalEntry entry) {
+        ChatMessage message = new ChatMessage();
+        message.setId(entry.id());
+        message.setSender(userRef(entry.senderId(), null));
+        if (entry.receiverId() != null) {
+            message.setReceiver(userRef(entry.receiverId(), null));
+        }
+        message.setMessage(entry.message());
+        message.setVideoId(entry.videoId());
+        message.setSentAt(LocalDateTime.parse(entry.sentAt()));
+        if (entry.receiverId() != null) {
+            message.setConversationKey(ChatMessage.conversationKey(entry.senderId(), entry.receiverId()));
+        }
+        return message;
+    }
+
+    /**
+     * Detached User carrying only id and username, enough to persist and route a message.
+     */
+    static User userRef(Long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}
@@ -0,0 +1,336 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.dto.UploadSessionRequest;
+import com.espacodosaber.dto.UploadSessionResponse;
+import com.espacodosaber.dto.VideoRequest;
+import com.espacodosaber.dto.VideoResponse;
+import com.espacodosaber.model.UploadChunk;
+import com.espacodosaber.model.UploadSession;
+import com.espacodosaber.model.UploadStatus;
+import com.espacodosaber.repository.UploadChunkRepository;
+import com.espacodosaber.repository.UploadSessionRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resumable chunked uploads.
+ *
+ * A session preallocates the target file; each chunk is written straight to
+ * its offset through a positioned FileChannel write, so chunks may arrive out
+ * of order, in parallel and more than once. Received chunks are recorded in
+ * upload_chunks only after the bytes are forced to disk, which together with
+ * the partial file lets a session resume after a backend restart. Completing a
+ * session (a compare-and-set from OPEN) hashes the file and hands it to the
+ * video storage (a move for local storage). Sessions idle for longer than
+ * upload.session-ttl-hours are expired and their partial files deleted.
+ */
+@Log4j2
+@Service
+public class ChunkedUploadService {
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private UploadChunkRepository uploadChunkRepository;
+
+    @Autowired
+    private VideoService videoService;
+
+    @Value("${upload.session-dir:uploads/sessions/}")
+    private String sessionDir;
+
+    @Value("${upload.default-chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${upload.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${upload.max-file-size:10737418240}")
+    private long maxFileSize;
+
+    @Value("${streaming.ingest-buffer-size:262144}")
+    private int bufferSize;
+
+    @Value("${upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(bufferSize));
+
+    public UploadSessionResponse createSession(UploadSessionRequest request, String username) throws IOException {
+        if (request.getTotalSize() == null || request.getTotalSize() <= 0 || request.getTotalSize() > maxFileSize) {
+            throw new IllegalArgumentException("Invalid totalSize");
+        }
+        if (request.getTitle() == null || request.getTitle().isBlank()) {
+            throw new IllegalArgumentException("Title is required");
+        }
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize <= 0 || chunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("Invalid chunkSize");
+        }
+        long totalChunks = (request.getTotalSize() + chunkSize - 1) / chunkSize;
+
+        String id = UUID.randomUUID().toString();
+        Path dir = Paths.get(sessionDir);
+        Files.createDirectories(dir);
+        Path partial = dir.resolve(id + ".part");
+
+        // Preallocate so every chunk can be written at its final offset
+        try (RandomAccessFile file = new RandomAccessFile(partial.toFile(), "rw")) {
+            file.setLength(request.getTotalSize());
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(id);
+        session.setUsername(username);
+        session.setTitle(request.getTitle());
+        session.setDescription(request.getDescription());
+        session.setIsPublic(request.getIsPublic() != null ? request.getIsPublic() : false);
+        session.setIsLive(request.getIsLive() != null ? request.getIsLive() : false);
+        session.setOriginalFilename(request.getFilename());
+        session.setTotalSize(request.getTotalSize());
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks((int) totalChunks);
+        session.setFilePath(partial.toString());
+
+        return toResponse(uploadSessionRepository.save(session), List.of());
+    }
+
+    /**
+     * Writes chunk {@code index} at its offset. Re-sending a chunk simply
+     * overwrites the same bytes.
+     */
+    public void writeChunk(String sessionId, int index, InputStream body, String username) throws IOException {
+        UploadSession session = getOpenSession(sessionId, username);
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("Chunk index out of range: " + index);
+        }
+
+        long offset = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+        ByteBuffer buffer = buffers.get();
+        long written = 0;
+        try (ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel out = FileChannel.open(Paths.get(session.getFilePath()), StandardOpenOption.WRITE)) {
+            buffer.clear();
+            while (source.read(buffer) != -1) {
+                if (buffer.hasRemaining()) {
+                    continue;
+                }
+                written += flush(buffer, out, offset + written, expected - written);
+            }
+            written += flush(buffer, out, offset + written, expected - written);
+            if (written != expected) {
+                throw new IllegalArgumentException(
+                        "Chunk " + index + " has " + written + " bytes, expected " + expected);
+            }
+            // The chunk row must never outlive the bytes after a crash
+            out.force(false);
+        }
+
+        try {
+            uploadChunkRepository.save(new UploadChunk(
+                    new UploadChunk.Key(sessionId, index), written, LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            // Same chunk recorded concurrently by a retried request
+        }
+    }
+
+    public UploadSessionResponse getStatus(String sessionId, String username) {
+        UploadSession session = getSession(sessionId, username);
+        return toResponse(session, missingChunks(session));
+    }
+
+    /**
+     * Registers the assembled file as a video. The OPEN -> COMPLETED transition
+     * is a conditional update, so of two concurrent calls only one registers
+     * the file. Hashing and the hand-over to storage run outside any database
+     * transaction; when they fail the session is moved back to OPEN so the
+     * client can retry.
+     */
+    public VideoResponse complete(String sessionId, String username) throws IOException {
+        UploadSession session = getOpenSession(sessionId, username);
+
+        if (uploadChunkRepository.countBySessionId(sessionId) != session.getTotalChunks()) {
+            throw new IllegalStateException("Upload incomplete, missing chunks: " + missingChunks(session));
+        }
+        if (uploadSessionRepository.transition(sessionId, UploadStatus.OPEN, UploadStatus.COMPLETED) == 0) {
+            throw new IllegalStateException("Upload session already completed");
+        }
+
+        Path partial = Paths.get(session.getFilePath());
+        VideoRequest request = new VideoRequest();
+        request.setTitle(session.getTitle());
+        request.setDescription(session.getDescription());
+        request.setIsPublic(session.getIsPublic());
+        request.setIsLive(session.getIsLive());
+
+        VideoResponse video;
+        try {
+            video = videoService.registerUploadedFile(
+                    username, request, partial, session.getOriginalFilename(), sha256(partial), sniffContentType(partial));
+        } catch (IOException | RuntimeException e) {
+            uploadSessionRepository.transition(sessionId, UploadStatus.COMPLETED, UploadStatus.OPEN);
+            log.warn("Could not register upload " + sessionId + ", session reopened: " + e.getMessage());
+            throw e;
+        }
+
+        session.setStatus(UploadStatus.COMPLETED);
+        session.setCompletedAt(LocalDateTime.now());
+        session.setVideoId(video.getId());
+        uploadSessionRepository.save(session);
+        uploadChunkRepository.deleteBySessionId(sessionId);
+
+        return video;
+    }
+
+    /**
+     * Expires sessions that received no chunk for upload.session-ttl-hours,
+     * deleting their chunk rows and preallocated files.
+     */
+    @Scheduled(fixedDelayString = "${upload.expiry-interval-ms:900000}")
+    public void expireIdleSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(sessionTtlHours);
+        try {
+            List<UploadSession> idle;
+            while (!(idle = uploadSessionRepository.findIdle(UploadStatus.OPEN, cutoff, PageRequest.of(0, 100))).isEmpty()) {
+                for (UploadSession session : idle) {
+                    expire(session);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to expire upload sessions: " + e.getMessage());
+        }
+    }
+
+    private void expire(UploadSession session) {
+        if (uploadSessionRepository.transition(session.getId(), UploadStatus.OPEN, UploadStatus.EXPIRED) == 0) {
+            return;
+        }
+        uploadChunkRepository.deleteBySessionId(session.getId());
+        try {
+            Files.deleteIfExists(Paths.get(session.getFilePath()));
+        } catch (IOException e) {
+            log.warn("Could not delete expired upload " + session.getFilePath() + ": " + e.getMessage());
+        }
+        log.info("Expired upload session " + session.getId());
+    }
+
+    /**
+     * SHA-256 (hex) of the assembled file. Chunks arrive out of order, so the
+     * digest is taken in one sequential pass once all of them are on disk.
+     */
+    private String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private long flush(ByteBuffer buffer, FileChannel out, long position, long allowed) throws IOException {
+        buffer.flip();
+        if (buffer.remaining() > allowed) {
+            throw new IllegalArgumentException("Chunk is larger than expected");
+        }
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private String sniffContentType(Path file) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(512);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(head, 0);
+        }
+        head.flip();
+        String type = VideoIngestService.sniffContentType(head);
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private List<Integer> missingChunks(UploadSession session) {
+        if (session.getStatus() != UploadStatus.OPEN) {
+            return List.of();
+        }
+        Set<Integer> received = new HashSet<>(uploadChunkRepository.findChunkIndexes(session.getId()));
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (!received.contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private UploadSession getSession(String sessionId, String username) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Upload session not found"));
+        if (!session.getUsername().equals(username)) {
+            throw new RuntimeException("Upload session not found");
+        }
+        return session;
+    }
+
+    private UploadSession getOpenSession(String sessionId, String username) {
+        UploadSession session = getSession(sessionId, username);
+        if (session.getStatus() != UploadStatus.OPEN) {
+            throw new IllegalStateException("Upload session already " + session.getStatus().name().toLowerCase());
+        }
+        return session;
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session, List<Integer> missingChunks) {
+        UploadSessionResponse response = new UploadSessionResponse();
+        response.setSessionId(session.getId());
+        response.setStatus(session.getStatus().name());
+        response.setTotalSize(session.getTotalSize());
+        response.setChunkSize(session.getChunkSize());
+        response.setTotalChunks(session.getTotalChunks());
+        response.setMissingChunks(missingChunks);
+        response.setVideoId(session.getVideoId());
+        return response;
+    }
+}
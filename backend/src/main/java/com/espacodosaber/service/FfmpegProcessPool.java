@@ -0,0 +1,100 @@
+package com.espacodosaber.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the local ffmpeg binary with a bounded number of processes.
+ *
+ * At most media.ffmpeg.max-processes run at once (by default half the
+ * available cores), and each is limited to an equal share of the cores
+ * through -threads, so encoding never takes the whole machine from the
+ * request threads. Callers beyond the limit wait for a free slot.
+ */
+@Log4j2
+@Service
+public class FfmpegProcessPool {
+
+    @Value("${media.ffmpeg.path:ffmpeg}")
+    private String ffmpegPath;
+
+    @Value("${media.ffmpeg.max-processes:0}")
+    private int maxProcesses;
+
+    @Value("${media.ffmpeg.timeout-seconds:900}")
+    private long timeoutSeconds;
+
+    private Semaphore slots;
+
+    private int threadsPerProcess;
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int processes = maxProcesses > 0 ? maxProcesses : Math.max(1, cores / 2);
+        this.slots = new Semaphore(processes, true);
+        this.threadsPerProcess = Math.max(1, cores / processes);
+        log.info("ffmpeg pool: " + processes + " processes, " + threadsPerProcess + " threads each");
+    }
+
+    /**
+     * Runs ffmpeg with the given arguments in workDir and waits for it.
+     *
+     * @throws IOException when ffmpeg cannot be started, exits with an error
+     *                     or exceeds media.ffmpeg.timeout-seconds
+     */
+    public void run(List<String> args, Path workDir) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.addAll(List.of("-hide_banner", "-nostdin", "-y", "-loglevel", "error",
+                "-threads", String.valueOf(threadsPerProcess),
+                "-filter_threads", String.valueOf(threadsPerProcess)));
+        command.addAll(args);
+
+        Path logFile = workDir.resolve("ffmpeg.log");
+        slots.acquire();
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(workDir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile.toFile())
+                    .start();
+            boolean exited;
+            try {
+                exited = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+            if (!exited) {
+                process.destroyForcibly();
+                throw new IOException("ffmpeg timed out after " + timeoutSeconds + "s");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("ffmpeg exited with " + process.exitValue() + ": " + tail(logFile));
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    private static String tail(Path logFile) {
+        try {
+            String output = Files.readString(logFile, StandardCharsets.UTF_8).strip();
+            return output.length() > 500 ? output.substring(output.length() - 500) : output;
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.media.FragmentedMp4Writer;
+import com.espacodosaber.media.HlsPlan;
+import com.espacodosaber.media.Mp4Track;
+import com.espacodosaber.media.PositionedReader;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.storage.StoredObject;
+import com.espacodosaber.storage.VideoStorage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * HLS delivery of stored MP4s as fMP4 segments, without re-encoding.
+ *
+ * The segment plan (sample tables cut at keyframes, see HlsPlan) is built on
+ * first request and cached per video version; init and media segments are
+ * then assembled on the fly from the source file. The version is derived from
+ * the file checksum, so everything below /hls/v/{version}/ is immutable.
+ */
+@Service
+public class HlsService {
+
+    public static final String PLAYLIST_CONTENT_TYPE = "application/vnd.apple.mpegurl";
+    public static final String SEGMENT_CONTENT_TYPE = "video/mp4";
+
+    @Autowired
+    private VideoStorage videoStorage;
+
+    @Value("${hls.segment-seconds:6}")
+    private double segmentSeconds;
+
+    @Value("${hls.plan-cache-size:200}")
+    private long planCacheSize;
+
+    @Value("${hls.buffer-size:262144}")
+    private int bufferSize;
+
+    private Cache<String, HlsPlan> plans;
+
+    @FunctionalInterface
+    private interface ReaderAction<T> {
+        T apply(PositionedReader reader, long size) throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(planCacheSize)
+                .build();
+    }
+
+    /**
+     * Identifies the current file of the video; changes whenever the file does.
+     */
+    public String version(Video video) {
+        if (video.getChecksum() != null && video.getChecksum().length() >= 16) {
+            return video.getChecksum().substring(0, 16);
+        }
+        return Long.toHexString(video.getFileSize() != null ? video.getFileSize() : 0L)
+                + Integer.toHexString(video.getFilePath().hashCode());
+    }
+
+    public HlsPlan plan(Video video) {
+        return plans.get(video.getId() + ":" + version(video), key -> {
+            try {
+                return withReader(video.getFilePath(), (reader, size) ->
+                        HlsPlan.build(Mp4Track.readTracks(reader, size), segmentSeconds));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot segment video " + video.getId(), e);
+            }
+        });
+    }
+
+    public String masterPlaylist(Video video) {
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-STREAM-INF:BANDWIDTH=")
+                .append(video.getBitrate() != null ? video.getBitrate() * 11 / 10 : 2_000_000L);
+        if (video.getWidth() != null && video.getHeight() != null) {
+            playlist.append(",RESOLUTION=").append(video.getWidth()).append('x').append(video.getHeight());
+        }
+        codecs(video).ifPresent(codecs -> playlist.append(",CODECS=\"").append(codecs).append('"'));
+        playlist.append('\n')
+                .append("v/").append(version(video)).append("/index.m3u8\n");
+        return playlist.toString();
+    }
+
+    public String mediaPlaylist(HlsPlan plan) {
+        StringBuilder playlist = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:7\n")
+                .append("#EXT-X-TARGETDURATION:").append(plan.targetDurationSeconds()).append('\n')
+                .append("#EXT-X-MEDIA-SEQUENCE:0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:VOD\n")
+                .append("#EXT-X-INDEPENDENT-SEGMENTS\n")
+                .append("#EXT-X-MAP:URI=\"init.mp4\"\n");
+        for (HlsPlan.Segment segment : plan.segments) {
+            playlist.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", segment.durationSeconds()))
+                    .append("seg-").append(segment.index()).append(".m4s\n");
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    public byte[] initSegment(HlsPlan plan) {
+        return FragmentedMp4Writer.initSegment(plan.tracks);
+    }
+
+    /**
+     * Size in bytes of the media segment, for Content-Length.
+     */
+    public long segmentSize(HlsPlan plan, HlsPlan.Segment segment) {
+        return FragmentedMp4Writer.moof(plan.tracks, segment).length + 8L
+                + FragmentedMp4Writer.mdatPayloadSize(plan.tracks, segment);
+    }
+
+    public void writeSegment(Video video, HlsPlan plan, HlsPlan.Segment segment, OutputStream out) throws IOException {
+        out.write(FragmentedMp4Writer.moof(plan.tracks, segment));
+        out.write(FragmentedMp4Writer.mdatHeader(FragmentedMp4Writer.mdatPayloadSize(plan.tracks, segment)));
+        withReader(video.getFilePath(), (reader, size) -> {
+            FragmentedMp4Writer.writeSamples(plan.tracks, segment, reader, out, bufferSize);
+            return null;
+        });
+    }
+
+    private Optional<String> codecs(Video video) {
+        // only RFC 6381 strings with profile information are usable in CODECS
+        if (video.getVideoCodec() == null || !video.getVideoCodec().contains(".")) {
+            return Optional.empty();
+        }
+        List<String> codecs = new ArrayList<>();
+        codecs.add(video.getVideoCodec());
+        if ("mp4a".equals(video.getAudioCodec())) {
+            codecs.add("mp4a.40.2");
+        }
+        return Optional.of(String.join(",", codecs));
+    }
+
+    private <T> T withReader(String key, ReaderAction<T> action) throws IOException {
+        Optional<Path> local = videoStorage.localPath(key);
+        if (local.isPresent()) {
+            try (FileChannel channel = FileChannel.open(local.get(), StandardOpenOption.READ)) {
+                return action.apply(channel::read, channel.size());
+            }
+        }
+        StoredObject object = videoStorage.stat(key)
+                .orElseThrow(() -> new IOException("Video file not found: " + key));
+        return action.apply(VideoMetadataService.rangeReader(videoStorage, key), object.size());
+    }
+}
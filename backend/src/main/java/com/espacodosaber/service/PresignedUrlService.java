@@ -0,0 +1,109 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.espacodosaber.storage.VideoStorage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Short-lived presigned URLs for video objects, cached per (video, user tier)
+ * until shortly before they expire so repeated playbacks reuse the same URL.
+ */
+@Service
+public class PresignedUrlService {
+
+    @Autowired
+    private VideoStorage videoStorage;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Value("${streaming.presign.ttl-seconds:900}")
+    private long ttlSeconds;
+
+    @Value("${streaming.presign.refresh-margin-seconds:120}")
+    private long refreshMarginSeconds;
+
+    @Value("${streaming.presign.cache-size:10000}")
+    private long cacheSize;
+
+    private Cache<Key, PresignedUrl> cache;
+
+    record Key(Long videoId, String tier) {}
+
+    public record PresignedUrl(String url, Instant expiresAt) {
+
+        /**
+         * Seconds a client may reuse this URL before it should ask again.
+         */
+        public long reusableForSeconds(long marginSeconds) {
+            return Math.max(0, Duration.between(Instant.now(), expiresAt).getSeconds() - marginSeconds);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<Key, PresignedUrl>() {
+                    @Override
+                    public long expireAfterCreate(Key key, PresignedUrl value, long currentTime) {
+                        long seconds = value.reusableForSeconds(refreshMarginSeconds);
+                        return Duration.ofSeconds(seconds).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, PresignedUrl value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, PresignedUrl value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        invalidationBus.subscribe(CacheInvalidationBus.VIDEOS, key -> {
+            if (CacheInvalidationBus.ALL.equals(key)) {
+                cache.invalidateAll();
+            } else {
+                evict(Long.valueOf(key));
+            }
+        });
+    }
+
+    /**
+     * Presigned URL for the video object, or empty when the storage backend
+     * cannot presign (local storage).
+     */
+    public Optional<PresignedUrl> urlFor(Long videoId, String storageKey, String tier) {
+        PresignedUrl cached = cache.getIfPresent(new Key(videoId, tier));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Duration ttl = Duration.ofSeconds(ttlSeconds);
+        Instant expiresAt = Instant.now().plus(ttl);
+        Optional<PresignedUrl> url = videoStorage.presignedUrl(storageKey, ttl)
+                .map(value -> new PresignedUrl(value, expiresAt));
+        url.ifPresent(value -> cache.put(new Key(videoId, tier), value));
+        return url;
+    }
+
+    public void evict(Long videoId) {
+        cache.asMap().keySet().removeIf(key -> key.videoId().equals(videoId));
+    }
+
+    public long refreshMarginSeconds() {
+        return refreshMarginSeconds;
+    }
+}
@@ -0,0 +1,62 @@
+package com.espacodosaber.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01,
+ * 10 bits of worker id and a 12-bit per-millisecond sequence. Ids are unique
+ * across nodes with distinct worker ids and roughly ordered by creation time.
+ * If the clock moves backwards, or the sequence overflows, the generator keeps
+ * counting from its last timestamp instead of waiting.
+ */
+@Log4j2
+@Component
+public class SnowflakeIdGenerator {
+
+    private static final long EPOCH_MILLIS = 1704067200000L;
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    @Value("${chat.persistence.worker-id:-1}")
+    private long configuredWorkerId;
+
+    private long workerId;
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    /**
+     * Fails startup unless a worker id in 0..1023 is configured: a random or
+     * truncated id could collide with another replica and reuse chat ids.
+     */
+    @PostConstruct
+    public void init() {
+        if (configuredWorkerId < 0 || configuredWorkerId > MAX_WORKER_ID) {
+            throw new IllegalStateException(
+                    "chat.persistence.worker-id (CHAT_WORKER_ID) must be set to a value between 0 and "
+                            + MAX_WORKER_ID + " that is unique per replica, got " + configuredWorkerId);
+        }
+        this.workerId = configuredWorkerId;
+        log.info("Snowflake worker id " + workerId);
+    }
+
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return ((timestamp - EPOCH_MILLIS) << (WORKER_BITS + SEQUENCE_BITS))
+                | (workerId << SEQUENCE_BITS)
+                | sequence;
+    }
+}
@@ -0,0 +1,77 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.repository.ChatMessageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user unread chat counters kept in memory.
+ *
+ * A counter is loaded the first time it is read, from one COUNT query plus
+ * the messages still in this node's write-behind buffer, and is then
+ * maintained by increments on send and decrements on mark-read. Counters are
+ * dropped after chat.unread.resync-ms and recounted on the next read, which
+ * corrects drift from messages handled by other nodes. Counters that were
+ * never read are not created by increments; the load counts those messages.
+ */
+@Service
+public class UnreadCounters {
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatWriteBehindBuffer writeBehindBuffer;
+
+    @Value("${chat.unread.max-users:100000}")
+    private long maxUsers;
+
+    @Value("${chat.unread.resync-ms:600000}")
+    private long resyncMs;
+
+    private Cache<Long, LongAdder> counters;
+
+    @PostConstruct
+    public void init() {
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMillis(resyncMs))
+                .build();
+    }
+
+    public long get(Long userId) {
+        return Math.max(0, counters.get(userId, this::load).sum());
+    }
+
+    public void increment(Long userId) {
+        LongAdder counter = counters.getIfPresent(userId);
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    public void decrement(Long userId, long count) {
+        if (count <= 0) {
+            return;
+        }
+        LongAdder counter = counters.getIfPresent(userId);
+        if (counter != null) {
+            counter.add(-count);
+        }
+    }
+
+    private LongAdder load(Long userId) {
+        LongAdder counter = new LongAdder();
+        // buffer first: a row flushed in between is counted twice rather than missed
+        counter.add(writeBehindBuffer.pendingFor(userId));
+        counter.add(chatMessageRepository.countByReceiverIdAndIsReadFalse(userId));
+        return counter;
+    }
+}
@@ -0,0 +1,72 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.espacodosaber.dto.UserCard;
+import com.espacodosaber.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Small id -> UserCard cache used to render chat messages. A page of history
+ * resolves all its missing users with one IN query. Entries are dropped on
+ * USER_CARDS invalidations (user updates on any node).
+ */
+@Service
+public class UserCardCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Value("${chat.user-cards.max-size:10000}")
+    private long maxSize;
+
+    @Value("${chat.user-cards.ttl-ms:600000}")
+    private long ttlMs;
+
+    private Cache<Long, UserCard> cards;
+
+    @PostConstruct
+    public void init() {
+        this.cards = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        invalidationBus.subscribe(CacheInvalidationBus.USER_CARDS, key -> {
+            if (CacheInvalidationBus.ALL.equals(key)) {
+                cards.invalidateAll();
+            } else {
+                cards.invalidate(Long.valueOf(key));
+            }
+        });
+    }
+
+    /**
+     * Card of the user, or null when the user does not exist.
+     */
+    public UserCard get(Long userId) {
+        return cards.get(userId, id -> userRepository.findCardById(id).orElse(null));
+    }
+
+    public Map<Long, UserCard> getAll(Collection<Long> userIds) {
+        return cards.getAll(userIds, missing -> load(Set.copyOf(missing)));
+    }
+
+    private Map<Long, UserCard> load(Set<Long> ids) {
+        return userRepository.findCardsByIdIn(ids).stream()
+                .collect(Collectors.toMap(UserCard::id, Function.identity()));
+    }
+}
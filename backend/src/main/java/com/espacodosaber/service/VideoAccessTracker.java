@@ -0,0 +1,196 @@
+package com.espacodosaber.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous VideoAccess tracking.
+ *
+ * Stream requests only enqueue a (video, student) event: repeated events for
+ * the same pair are coalesced in memory until the next flush, and the backlog
+ * is bounded (events beyond tracking.max-pending are dropped and counted).
+ * A background writer upserts the pending pairs in JDBC batches on the
+ * unique (video_id, student_id) constraint, and flushes once more on shutdown.
+ * A failed batch is logged and counted; all counters are exported as
+ * video.access.* meters.
+ */
+@Log4j2
+@Service
+public class VideoAccessTracker {
+
+    private static final String POSTGRES_UPSERT =
+            "INSERT INTO video_access (video_id, student_id, access_time, watched_duration, completed) " +
+            "VALUES (?, ?, ?, 0, false) " +
+            "ON CONFLICT (video_id, student_id) DO UPDATE " +
+            "SET access_time = GREATEST(video_access.access_time, EXCLUDED.access_time)";
+
+    // Same semantics as the Postgres upsert: only access_time moves, and only forward
+    private static final String H2_UPSERT =
+            "MERGE INTO video_access t USING (SELECT CAST(? AS BIGINT) AS video_id, " +
+            "CAST(? AS BIGINT) AS student_id, CAST(? AS TIMESTAMP) AS access_time) s " +
+            "ON t.video_id = s.video_id AND t.student_id = s.student_id " +
+            "WHEN MATCHED THEN UPDATE SET access_time = GREATEST(t.access_time, s.access_time) " +
+            "WHEN NOT MATCHED THEN INSERT (video_id, student_id, access_time, watched_duration, completed) " +
+            "VALUES (s.video_id, s.student_id, s.access_time, 0, false)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${tracking.max-pending:100000}")
+    private int maxPending;
+
+    @Value("${tracking.batch-size:500}")
+    private int batchSize;
+
+    record AccessKey(Long videoId, Long studentId) {}
+
+    public record Stats(long recorded, long coalesced, long dropped, long written, long batches,
+                        long failed, long failedBatches, int pending) {}
+
+    private final ConcurrentHashMap<AccessKey, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<AccessKey> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    private String upsertSql;
+
+    @PostConstruct
+    public void init() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            this.upsertSql = "H2".equalsIgnoreCase(product) ? H2_UPSERT : POSTGRES_UPSERT;
+        }
+        counter("video.access.events", "recorded", recorded);
+        counter("video.access.events", "coalesced", coalesced);
+        counter("video.access.events", "dropped", dropped);
+        counter("video.access.events", "written", written);
+        counter("video.access.events", "failed", failed);
+        counter("video.access.batches", "written", batches);
+        counter("video.access.batches", "failed", failedBatches);
+        Gauge.builder("video.access.pending", pendingCount, AtomicInteger::get)
+                .description("Access events waiting for the next flush")
+                .register(meterRegistry);
+    }
+
+    private void counter(String name, String outcome, AtomicLong value) {
+        FunctionCounter.builder(name, value, AtomicLong::get)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records an access without touching the database. Never blocks.
+     */
+    public void record(Long videoId, Long studentId) {
+        recorded.incrementAndGet();
+        AccessKey key = new AccessKey(videoId, studentId);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (pending.replace(key, now) != null) {
+            coalesced.incrementAndGet();
+            return;
+        }
+
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            if (dropped.incrementAndGet() % 10_000 == 1) {
+                log.warn("Video access backlog full (" + maxPending + "), dropping events");
+            }
+            return;
+        }
+
+        if (pending.putIfAbsent(key, now) == null) {
+            queue.offer(key);
+        } else {
+            // Lost the race with another request for the same pair
+            pendingCount.decrementAndGet();
+            coalesced.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush video access events: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        AccessKey key;
+        while ((key = queue.poll()) != null) {
+            LocalDateTime accessTime = pending.remove(key);
+            pendingCount.decrementAndGet();
+            if (accessTime == null) {
+                continue;
+            }
+            batch.add(new Object[]{key.videoId(), key.studentId(), Timestamp.valueOf(accessTime)});
+            if (batch.size() >= batchSize) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(upsertSql, batch);
+            written.addAndGet(batch.size());
+            batches.incrementAndGet();
+        } catch (DataAccessException e) {
+            // The events are lost, but the rest of the backlog is still written
+            failed.addAndGet(batch.size());
+            failedBatches.incrementAndGet();
+            log.error("Failed to write " + batch.size() + " video access events: " + e.getMessage());
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(recorded.get(), coalesced.get(), dropped.get(),
+                written.get(), batches.get(), failed.get(), failedBatches.get(), pendingCount.get());
+    }
+}
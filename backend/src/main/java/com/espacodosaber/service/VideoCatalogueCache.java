@@ -0,0 +1,108 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.cache.CacheInvalidationBus;
+import com.espacodosaber.dto.VideoPage;
+import com.espacodosaber.dto.VideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Read-through cache in front of VideoService for the catalogue endpoints.
+ *
+ * Holds immutable VideoResponse snapshots (single videos and public pages)
+ * together with a precomputed ETag. Caffeine loads each key at most once at a
+ * time, so a burst of identical requests at class start triggers one query.
+ * Entries are evicted on upload, update and visibility change through
+ * CacheInvalidationBus events (published by CatalogueCacheEvictionListener on
+ * any node), and expire after catalogue.cache.ttl-ms.
+ */
+@Service
+public class VideoCatalogueCache {
+
+    @Autowired
+    private VideoService videoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Value("${catalogue.cache.max-videos:10000}")
+    private long maxVideos;
+
+    @Value("${catalogue.cache.max-pages:1000}")
+    private long maxPages;
+
+    @Value("${catalogue.cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    public record Cached<T>(T value, String etag) {}
+
+    record PageKey(String after, int limit) {}
+
+    private Cache<Long, Cached<VideoResponse>> videos;
+    private Cache<PageKey, Cached<VideoPage>> publicPages;
+
+    @PostConstruct
+    public void init() {
+        this.videos = Caffeine.newBuilder()
+                .maximumSize(maxVideos)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        this.publicPages = Caffeine.newBuilder()
+                .maximumSize(maxPages)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        invalidationBus.subscribe(CacheInvalidationBus.VIDEOS, key -> {
+            if (CacheInvalidationBus.ALL.equals(key)) {
+                evictAll();
+            } else {
+                evictVideo(Long.valueOf(key));
+            }
+        });
+        invalidationBus.subscribe(CacheInvalidationBus.PUBLIC_PAGES, key -> evictPublicPages());
+    }
+
+    public Cached<VideoResponse> getVideo(Long id) {
+        return videos.get(id, key -> snapshot(videoService.getVideoById(key)));
+    }
+
+    public Cached<VideoPage> getPublicPage(String after, int limit) {
+        PageKey key = new PageKey(after == null ? "" : after, limit);
+        return publicPages.get(key, k -> snapshot(videoService.getPublicVideos(after, limit)));
+    }
+
+    public void evictVideo(Long id) {
+        videos.invalidate(id);
+        publicPages.invalidateAll();
+    }
+
+    public void evictPublicPages() {
+        publicPages.invalidateAll();
+    }
+
+    public void evictAll() {
+        videos.invalidateAll();
+        publicPages.invalidateAll();
+    }
+
+    private <T> Cached<T> snapshot(T value) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return new Cached<>(value, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to snapshot catalogue entry", e);
+        }
+    }
+}
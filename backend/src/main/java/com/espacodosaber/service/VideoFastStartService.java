@@ -0,0 +1,62 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.media.Mp4FastStart;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Ingest stage that moves a trailing moov to the front of staged uploads
+ * (Mp4FastStart), before they are probed and handed to storage.
+ */
+@Log4j2
+@Service
+public class VideoFastStartService {
+
+    @Value("${media.fast-start.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.fast-start.buffer-size:1048576}")
+    private int bufferSize;
+
+    @Value("${media.fast-start.max-moov-size:67108864}")
+    private long maxMoovSize;
+
+    /**
+     * @return the new SHA-256 (hex) of the file when it was rewritten
+     */
+    public Optional<String> optimize(Path file) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        MessageDigest digest = newDigest();
+        try {
+            Mp4FastStart.Outcome outcome = Mp4FastStart.rewrite(file, bufferSize, maxMoovSize, digest);
+            if (outcome == Mp4FastStart.Outcome.UNSUPPORTED) {
+                log.info("Left " + file + " as is: moov cannot be relocated");
+            }
+            if (outcome != Mp4FastStart.Outcome.REWRITTEN) {
+                return Optional.empty();
+            }
+            return Optional.of(HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Fast-start rewrite failed for " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
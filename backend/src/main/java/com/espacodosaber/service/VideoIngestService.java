@@ -0,0 +1,126 @@
+package com.espacodosaber.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Copies an upload stream to disk through a fixed-size direct buffer,
+ * computing its SHA-256 and sniffing the container type on the way.
+ * Memory per upload is bounded by streaming.ingest-buffer-size regardless
+ * of the file size.
+ */
+@Service
+public class VideoIngestService {
+
+    @Value("${streaming.ingest-buffer-size:262144}")
+    private int ingestBufferSize;
+
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(ingestBufferSize));
+
+    public record IngestResult(Path path, long size, String checksum, String contentType) {}
+
+    /**
+     * Streams the input into target. Data is written to a sibling ".part"
+     * file and moved into place once complete.
+     */
+    public IngestResult ingest(InputStream input, Path target, String declaredContentType) throws IOException {
+        MessageDigest digest = newDigest();
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+
+        long size = 0;
+        String sniffedType = null;
+
+        try (ReadableByteChannel source = Channels.newChannel(input);
+             FileChannel out = FileChannel.open(partial,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            boolean eof = false;
+            while (!eof) {
+                // Fill the buffer before each write so disk writes stay large
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer) == -1) {
+                        eof = true;
+                        break;
+                    }
+                }
+
+                buffer.flip();
+                if (size == 0 && buffer.hasRemaining()) {
+                    sniffedType = sniffContentType(buffer);
+                }
+
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+                buffer.clear();
+            }
+            out.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        String contentType = sniffedType != null ? sniffedType
+                : (declaredContentType != null ? declaredContentType : "application/octet-stream");
+        return new IngestResult(target, size, HexFormat.of().formatHex(digest.digest()), contentType);
+    }
+
+    /**
+     * Detects common video containers from their leading magic bytes.
+     * Returns null when the format is not recognised.
+     */
+    static String sniffContentType(ByteBuffer head) {
+        int p = head.position();
+        int n = head.remaining();
+
+        if (n >= 12 && head.get(p + 4) == 'f' && head.get(p + 5) == 't'
+                && head.get(p + 6) == 'y' && head.get(p + 7) == 'p') {
+            boolean quickTime = head.get(p + 8) == 'q' && head.get(p + 9) == 't';
+            return quickTime ? "video/quicktime" : "video/mp4";
+        }
+        if (n >= 4 && (head.get(p) & 0xFF) == 0x1A && (head.get(p + 1) & 0xFF) == 0x45
+                && (head.get(p + 2) & 0xFF) == 0xDF && (head.get(p + 3) & 0xFF) == 0xA3) {
+            return "video/webm";
+        }
+        if (n >= 12 && head.get(p) == 'R' && head.get(p + 1) == 'I' && head.get(p + 2) == 'F'
+                && head.get(p + 3) == 'F' && head.get(p + 8) == 'A' && head.get(p + 9) == 'V'
+                && head.get(p + 10) == 'I') {
+            return "video/x-msvideo";
+        }
+        if (n >= 4 && head.get(p) == 'O' && head.get(p + 1) == 'g' && head.get(p + 2) == 'g'
+                && head.get(p + 3) == 'S') {
+            return "video/ogg";
+        }
+        if (n >= 189 && head.get(p) == 0x47 && head.get(p + 188) == 0x47) {
+            return "video/mp2t";
+        }
+        return null;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
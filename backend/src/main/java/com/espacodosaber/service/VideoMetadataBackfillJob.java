@@ -0,0 +1,83 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.jobs.ProcessingJobQueue;
+import com.espacodosaber.model.ProcessingJobType;
+import com.espacodosaber.repository.VideoRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Queues metadata and thumbnail jobs for videos uploaded before those were
+ * generated.
+ *
+ * Runs once in the background after startup (media.backfill.enabled). Pending
+ * ids are read in keyset pages and queued at media.backfill.priority, below
+ * new uploads; the job queue skips videos that already have a pending job of
+ * the same type, so several replicas starting together queue each video once.
+ * Videos whose thumbnail job already ended FAILED are not queued again on
+ * every restart.
+ */
+@Log4j2
+@Component
+public class VideoMetadataBackfillJob {
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private ProcessingJobQueue processingJobQueue;
+
+    @Value("${media.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${media.backfill.priority:-10}")
+    private int priority;
+
+    @Value("${media.backfill.page-size:200}")
+    private int pageSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "media-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            backfill(ProcessingJobType.METADATA, videoRepository::findIdsPendingProbe);
+            backfill(ProcessingJobType.THUMBNAIL, videoRepository::findIdsMissingThumbnail);
+        } catch (Exception e) {
+            log.error("Media backfill stopped: " + e.getMessage());
+        }
+    }
+
+    private void backfill(ProcessingJobType type, BiFunction<Long, Pageable, List<Long>> pendingIds) {
+        int queued = 0;
+        long afterId = 0;
+        List<Long> ids;
+        while (!(ids = pendingIds.apply(afterId, PageRequest.of(0, pageSize))).isEmpty()) {
+            for (Long id : ids) {
+                if (processingJobQueue.enqueue(type, id, priority)) {
+                    queued++;
+                }
+            }
+            afterId = ids.get(ids.size() - 1);
+        }
+        if (queued > 0) {
+            log.info("Media backfill: " + queued + " " + type + " jobs queued");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.media.Mp4Metadata;
+import com.espacodosaber.media.Mp4MetadataParser;
+import com.espacodosaber.media.PositionedReader;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.storage.StoredObject;
+import com.espacodosaber.storage.VideoStorage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Reads duration, resolution, codecs and bitrate from uploaded videos with
+ * Mp4MetadataParser. Files that are not MP4/MOV, or are malformed, give no
+ * metadata.
+ */
+@Log4j2
+@Service
+public class VideoMetadataService {
+
+    @Autowired
+    private VideoStorage videoStorage;
+
+    public Optional<Mp4Metadata> probe(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Mp4MetadataParser.parse(channel);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read media metadata from " + file + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Probes a stored object, through its local file when there is one and
+     * with ranged reads otherwise.
+     */
+    public Optional<Mp4Metadata> probe(String key) {
+        Optional<Path> local = videoStorage.localPath(key);
+        if (local.isPresent()) {
+            return probe(local.get());
+        }
+        try {
+            Optional<StoredObject> object = videoStorage.stat(key);
+            if (object.isEmpty()) {
+                return Optional.empty();
+            }
+            return Mp4MetadataParser.parse(rangeReader(videoStorage, key), object.get().size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read media metadata from " + key + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Copies the metadata onto the video and marks it as probed.
+     */
+    public void apply(Video video, Optional<Mp4Metadata> metadata) {
+        long knownDuration = video.getDuration() != null ? video.getDuration() : 0L;
+        video.setDuration(metadata.map(m -> Math.round(m.durationMillis() / 1000.0)).orElse(knownDuration));
+        metadata.ifPresent(m -> {
+            video.setWidth(m.width());
+            video.setHeight(m.height());
+            video.setVideoCodec(m.videoCodec());
+            video.setAudioCodec(m.audioCodec());
+            if (video.getFileSize() != null) {
+                video.setBitrate(m.bitrate(video.getFileSize()));
+            }
+        });
+        video.setMediaProbedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Positioned reads over a stored object through ranged GETs, for storage
+     * backends without a local file.
+     */
+    static PositionedReader rangeReader(VideoStorage storage, String key) {
+        return (dst, position) -> {
+            try (InputStream in = storage.getRange(key, position, dst.remaining())) {
+                byte[] bytes = in.readNBytes(dst.remaining());
+                if (bytes.length == 0) {
+                    return -1;
+                }
+                dst.put(bytes);
+                return bytes.length;
+            }
+        };
+    }
+}
@@ -0,0 +1,218 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.media.Mp4Metadata;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.storage.VideoStorage;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Poster image and seek-preview sprite sheets for a stored video.
+ *
+ * A single ffmpeg run decodes the video once and splits it into two outputs:
+ * the poster (one frame near the start) and thumbnails every interval
+ * seconds tiled into JPEG sprite sheets. A WebVTT file maps each interval to
+ * its tile (sheet#xywh=...). Everything is stored under previews/{id}/ next
+ * to the video.
+ */
+@Log4j2
+@Service
+public class VideoPreviewService {
+
+    private static final String SPRITE_FILE_PATTERN = "sprite-%d.jpg";
+
+    private static final String PREVIEWS_KEY_PREFIX = "previews/";
+
+    @Autowired
+    private VideoRepository videoRepository;
+
+    @Autowired
+    private VideoStorage videoStorage;
+
+    @Autowired
+    private VideoMetadataService videoMetadataService;
+
+    @Autowired
+    private FfmpegProcessPool ffmpegProcessPool;
+
+    @Value("${storage.staging-dir:uploads/staging/}")
+    private String stagingDir;
+
+    @Value("${media.previews.poster-width:640}")
+    private int posterWidth;
+
+    @Value("${media.previews.poster-max-offset-seconds:30}")
+    private double posterMaxOffsetSeconds;
+
+    @Value("${media.previews.interval-seconds:5}")
+    private int intervalSeconds;
+
+    @Value("${media.previews.max-tiles:400}")
+    private int maxTiles;
+
+    @Value("${media.previews.tile-width:160}")
+    private int tileWidth;
+
+    @Value("${media.previews.tile-height:90}")
+    private int tileHeight;
+
+    @Value("${media.previews.columns:10}")
+    private int columns;
+
+    @Value("${media.previews.rows:10}")
+    private int rows;
+
+    /**
+     * Storage key of a sprite sheet referenced by the WebVTT at previewsKey.
+     */
+    public static String spriteKey(String previewsKey, int sheet) {
+        return previewsKey.substring(0, previewsKey.lastIndexOf('/') + 1) + String.format(SPRITE_FILE_PATTERN, sheet);
+    }
+
+    /**
+     * Generates and stores the poster and previews, then records their keys
+     * on the video.
+     */
+    public void generate(Video video) throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get(stagingDir));
+        Path work = Files.createTempDirectory(Paths.get(stagingDir), "previews-");
+        try {
+            double duration = durationSeconds(video);
+            // keep long videos to at most maxTiles thumbnails
+            int interval = duration > 0
+                    ? Math.max(intervalSeconds, (int) Math.ceil(duration / maxTiles))
+                    : intervalSeconds;
+
+            ffmpegProcessPool.run(arguments(source(video.getFilePath()), duration, interval), work);
+
+            String prefix = PREVIEWS_KEY_PREFIX + video.getId() + "/";
+            String previewsKey = null;
+            if (duration > 0) {
+                int sheets = 0;
+                while (Files.exists(work.resolve(String.format(SPRITE_FILE_PATTERN, sheets)))) {
+                    sheets++;
+                }
+                int tiles = Math.min((int) Math.ceil(duration / interval), sheets * columns * rows);
+                if (tiles > 0) {
+                    Path vtt = work.resolve("previews.vtt");
+                    Files.writeString(vtt, webVtt(tiles, interval, duration), StandardCharsets.UTF_8);
+                    for (int sheet = 0; sheet < sheets; sheet++) {
+                        String name = String.format(SPRITE_FILE_PATTERN, sheet);
+                        videoStorage.putFile(prefix + name, work.resolve(name), "image/jpeg");
+                    }
+                    previewsKey = prefix + "previews.vtt";
+                    videoStorage.putFile(previewsKey, vtt, "text/vtt");
+                }
+            }
+
+            String posterKey = prefix + "poster.jpg";
+            videoStorage.putFile(posterKey, work.resolve("poster.jpg"), "image/jpeg");
+
+            // reload: other jobs may have updated the row while ffmpeg ran
+            Video current = videoRepository.findById(video.getId()).orElse(null);
+            if (current != null) {
+                current.setThumbnailPath(posterKey);
+                current.setPreviewsPath(previewsKey);
+                videoRepository.save(current);
+            }
+        } finally {
+            deleteRecursively(work);
+        }
+    }
+
+    private List<String> arguments(String source, double duration, int interval) {
+        double posterAt = duration > 0 ? Math.min(duration * 0.1, posterMaxOffsetSeconds) : 0;
+        String poster = String.format(Locale.ROOT,
+                "trim=start=%.3f:duration=1,setpts=PTS-STARTPTS,scale=%d:-2", posterAt, posterWidth);
+
+        List<String> args = new ArrayList<>(List.of("-i", source, "-an", "-sn", "-dn"));
+        if (duration <= 0) {
+            args.addAll(List.of("-filter_complex", "[0:v]" + poster + "[poster]",
+                    "-map", "[poster]", "-frames:v", "1", "-update", "1", "-q:v", "3", "poster.jpg"));
+            return args;
+        }
+
+        String sprite = String.format(Locale.ROOT,
+                "fps=1/%d,scale=%d:%d:force_original_aspect_ratio=decrease," +
+                "pad=%d:%d:(ow-iw)/2:(oh-ih)/2,tile=%dx%d",
+                interval, tileWidth, tileHeight, tileWidth, tileHeight, columns, rows);
+        args.addAll(List.of(
+                "-filter_complex", "[0:v]split=2[p][s];[p]" + poster + "[poster];[s]" + sprite + "[sprite]",
+                "-map", "[poster]", "-frames:v", "1", "-update", "1", "-q:v", "3", "poster.jpg",
+                "-map", "[sprite]", "-q:v", "5", "-start_number", "0", SPRITE_FILE_PATTERN));
+        return args;
+    }
+
+    private String webVtt(int tiles, int interval, double duration) {
+        int perSheet = columns * rows;
+        StringBuilder vtt = new StringBuilder("WEBVTT\n");
+        for (int i = 0; i < tiles; i++) {
+            int tile = i % perSheet;
+            vtt.append('\n')
+                    .append(timestamp(i * (double) interval)).append(" --> ")
+                    .append(timestamp(Math.min((i + 1) * (double) interval, duration))).append('\n')
+                    // resolved against /api/videos/{id}/previews.vtt
+                    .append("previews/").append(i / perSheet).append(".jpg#xywh=")
+                    .append((tile % columns) * tileWidth).append(',')
+                    .append((tile / columns) * tileHeight).append(',')
+                    .append(tileWidth).append(',').append(tileHeight).append('\n');
+        }
+        return vtt.toString();
+    }
+
+    private static String timestamp(double seconds) {
+        long millis = Math.round(seconds * 1000);
+        return String.format(Locale.ROOT, "%02d:%02d:%02d.%03d",
+                millis / 3_600_000, millis / 60_000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+
+    private double durationSeconds(Video video) {
+        if (video.getMediaProbedAt() != null && video.getDuration() != null && video.getDuration() > 0) {
+            return video.getDuration();
+        }
+        return videoMetadataService.probe(video.getFilePath())
+                .map(Mp4Metadata::durationMillis)
+                .map(millis -> millis / 1000.0)
+                .orElse(0.0);
+    }
+
+    /**
+     * Input for ffmpeg: the local file, or a presigned URL that ffmpeg reads
+     * over HTTP with range requests.
+     */
+    private String source(String key) throws IOException {
+        return videoStorage.localPath(key)
+                .map(path -> path.toAbsolutePath().toString())
+                .or(() -> videoStorage.presignedUrl(key, Duration.ofHours(1)))
+                .orElseThrow(() -> new IOException("Video file cannot be read by ffmpeg: " + key));
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,23 +1,29 @@
 package com.espacodosaber.service;
 
+import com.espacodosaber.dto.VideoPage;
 import com.espacodosaber.dto.VideoRequest;
 import com.espacodosaber.dto.VideoResponse;
+import com.espacodosaber.jobs.ProcessingJobQueue;
 import com.espacodosaber.model.User;
 import com.espacodosaber.model.Video;
-import com.espacodosaber.model.VideoAccess;
 import com.espacodosaber.repository.UserRepository;
 import com.espacodosaber.repository.VideoAccessRepository;
 import com.espacodosaber.repository.VideoRepository;
+import com.espacodosaber.storage.VideoStorage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -34,47 +40,151 @@ public class VideoService {
     @Autowired
     private VideoAccessRepository videoAccessRepository;
 
-    private static final String UPLOAD_DIR = "uploads/videos/";
+    @Autowired
+    private VideoIngestService videoIngestService;
+
+    @Autowired
+    private VideoStorage videoStorage;
+
+    @Autowired
+    private ProcessingJobQueue processingJobQueue;
+
+    @Autowired
+    private VideoFastStartService videoFastStartService;
+
+    @Value("${storage.staging-dir:uploads/staging/}")
+    private String stagingDir;
+
+    private static final String VIDEO_KEY_PREFIX = "videos/";
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     public VideoResponse uploadVideo(MultipartFile file, VideoRequest request, String username) throws IOException {
         User teacher = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Create upload directory if it doesn't exist
-        File uploadDir = new File(UPLOAD_DIR);
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
+        // Create staging directory if it doesn't exist
+        Path staging = Paths.get(stagingDir);
+        Files.createDirectories(staging);
+
+        // Generate unique storage key
+        String key = newVideoKey(file.getOriginalFilename());
+
+        // Stream file to disk (never materialized as a byte[]), then hand it to storage
+        VideoIngestService.IngestResult ingested;
+        try (InputStream input = file.getInputStream()) {
+            ingested = videoIngestService.ingest(input,
+                    staging.resolve(UUID.randomUUID().toString()), file.getContentType());
+        }
+        String checksum = videoFastStartService.optimize(ingested.path()).orElse(ingested.checksum());
+        try {
+            videoStorage.putFile(key, ingested.path(), ingested.contentType());
+        } catch (IOException | RuntimeException e) {
+            // storage keeps the staged file on failure; this upload cannot be retried from it
+            Files.deleteIfExists(ingested.path());
+            throw e;
         }
 
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        String filename = UUID.randomUUID().toString() + extension;
-        String filePath = UPLOAD_DIR + filename;
+        Video savedVideo = saveVideo(teacher, request, key,
+                ingested.size(), checksum, ingested.contentType());
+
+        return convertToResponse(savedVideo);
+    }
+
+    /**
+     * Registers a file that was assembled on local disk by another ingest path
+     * (e.g. a resumable upload session). The file is handed to the video
+     * storage, which moves it when storage is local.
+     */
+    public VideoResponse registerUploadedFile(String username, VideoRequest request, Path source,
+                                              String originalFilename, String checksum,
+                                              String contentType) throws IOException {
+        User teacher = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        String key = newVideoKey(originalFilename);
+        long size = Files.size(source);
+        checksum = videoFastStartService.optimize(source).orElse(checksum);
+        videoStorage.putFile(key, source, contentType);
+
+        Video savedVideo = saveVideo(teacher, request, key, size, checksum, contentType);
+        return convertToResponse(savedVideo);
+    }
 
-        // Save file
-        Path path = Paths.get(filePath);
-        Files.write(path, file.getBytes());
+    private String newVideoKey(String originalFilename) {
+        String extension = originalFilename != null && originalFilename.contains(".")
+                ? originalFilename.substring(originalFilename.lastIndexOf("."))
+                : "";
+        return VIDEO_KEY_PREFIX + UUID.randomUUID().toString() + extension;
+    }
 
-        // Create video entity
+    /**
+     * Saves the video row and queues its processing jobs (metadata, HLS,
+     * thumbnails).
+     */
+    private Video saveVideo(User teacher, VideoRequest request, String filePath,
+                            long size, String checksum, String contentType) {
         Video video = new Video();
         video.setTitle(request.getTitle());
         video.setDescription(request.getDescription());
         video.setFilePath(filePath);
+        video.setFileSize(size);
+        video.setChecksum(checksum);
+        video.setContentType(contentType);
         video.setTeacher(teacher);
-        video.setDuration(0L); // Could be calculated from video metadata
+        video.setDuration(0L); // filled in by the metadata job
         video.setIsLive(request.getIsLive() != null ? request.getIsLive() : false);
         video.setIsPublic(request.getIsPublic() != null ? request.getIsPublic() : false);
 
-        Video savedVideo = videoRepository.save(video);
+        Video saved = videoRepository.save(video);
+        processingJobQueue.enqueueAll(saved);
+        return saved;
+    }
 
-        return convertToResponse(savedVideo);
+    /**
+     * Keyset-paginated public catalogue, newest first. A single projection
+     * query joins the teacher name, so no entity (or lazy teacher) is loaded.
+     *
+     * @param after cursor returned as nextCursor by the previous page, or null
+     */
+    public VideoPage getPublicVideos(String after, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells whether there is a next page
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        List<VideoResponse> rows;
+        if (after == null || after.isBlank()) {
+            rows = videoRepository.findPublicFirstPage(fetch);
+        } else {
+            String[] cursor = decodeCursor(after);
+            rows = videoRepository.findPublicPageAfter(
+                    LocalDateTime.parse(cursor[0]), Long.parseLong(cursor[1]), fetch);
+        }
+
+        if (rows.size() <= pageSize) {
+            return new VideoPage(rows, null);
+        }
+        List<VideoResponse> items = rows.subList(0, pageSize);
+        VideoResponse last = items.get(pageSize - 1);
+        return new VideoPage(List.copyOf(items), encodeCursor(last.getUploadedAt(), last.getId()));
     }
 
-    public List<VideoResponse> getAllPublicVideos() {
-        return videoRepository.findByIsPublicTrue().stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    private static String encodeCursor(LocalDateTime uploadedAt, Long id) {
+        String raw = uploadedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
     }
 
     public List<VideoResponse> getTeacherVideos(String username) {
@@ -92,35 +202,23 @@ public class VideoService {
         return convertToResponse(video);
     }
 
-    public void trackVideoAccess(Long videoId, String username) {
-        User student = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new RuntimeException("Video not found"));
-
-        VideoAccess access = videoAccessRepository.findByVideoAndStudent(video, student)
-                .orElse(new VideoAccess());
-        
-        access.setVideo(video);
-        access.setStudent(student);
-        access.setAccessTime(LocalDateTime.now());
-        
-        videoAccessRepository.save(access);
-    }
-
     private VideoResponse convertToResponse(Video video) {
-        VideoResponse response = new VideoResponse();
-        response.setId(video.getId());
-        response.setTitle(video.getTitle());
-        response.setDescription(video.getDescription());
-        response.setThumbnailPath(video.getThumbnailPath());
-        response.setTeacherId(video.getTeacher().getId());
-        response.setTeacherName(video.getTeacher().getFullName());
-        response.setDuration(video.getDuration());
-        response.setIsLive(video.getIsLive());
-        response.setIsPublic(video.getIsPublic());
-        response.setUploadedAt(video.getUploadedAt());
-        return response;
+        return new VideoResponse(
+                video.getId(),
+                video.getTitle(),
+                video.getDescription(),
+                video.getThumbnailPath(),
+                video.getTeacher().getId(),
+                video.getTeacher().getFullName(),
+                video.getDuration(),
+                video.getIsLive(),
+                video.getIsPublic(),
+                video.getUploadedAt(),
+                video.getWidth(),
+                video.getHeight(),
+                video.getVideoCodec(),
+                video.getAudioCodec(),
+                video.getBitrate()
+        );
     }
 }
@@ -0,0 +1,205 @@
+package com.espacodosaber.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind aggregation of player heartbeats into VideoAccess.
+ *
+ * Heartbeats only update an entry in a sharded in-memory map (furthest
+ * position, completed flag). A scheduled writer persists dirty entries in
+ * JDBC batches, at most once per progress.persist-interval-ms per
+ * (video, student), and drops entries that stopped receiving heartbeats.
+ * An entry is only marked clean once its batch is written, so a failed
+ * write is retried instead of losing positions.
+ */
+@Log4j2
+@Service
+public class WatchProgressAggregator {
+
+    private static final String POSTGRES_UPSERT =
+            "INSERT INTO video_access (video_id, student_id, access_time, watched_duration, completed) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (video_id, student_id) DO UPDATE SET " +
+            "access_time = GREATEST(video_access.access_time, EXCLUDED.access_time), " +
+            "watched_duration = GREATEST(video_access.watched_duration, EXCLUDED.watched_duration), " +
+            "completed = video_access.completed OR EXCLUDED.completed";
+
+    private static final String H2_UPSERT =
+            "MERGE INTO video_access t USING (SELECT CAST(? AS BIGINT) AS video_id, " +
+            "CAST(? AS BIGINT) AS student_id, CAST(? AS TIMESTAMP) AS access_time, " +
+            "CAST(? AS BIGINT) AS watched_duration, CAST(? AS BOOLEAN) AS completed) s " +
+            "ON t.video_id = s.video_id AND t.student_id = s.student_id " +
+            "WHEN MATCHED THEN UPDATE SET access_time = GREATEST(t.access_time, s.access_time), " +
+            "watched_duration = GREATEST(t.watched_duration, s.watched_duration), " +
+            "completed = t.completed OR s.completed " +
+            "WHEN NOT MATCHED THEN INSERT (video_id, student_id, access_time, watched_duration, completed) " +
+            "VALUES (s.video_id, s.student_id, s.access_time, s.watched_duration, s.completed)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${progress.shards:16}")
+    private int shardCount;
+
+    @Value("${progress.persist-interval-ms:30000}")
+    private long persistIntervalMs;
+
+    @Value("${progress.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${progress.completion-ratio:0.95}")
+    private double completionRatio;
+
+    @Value("${progress.batch-size:500}")
+    private int batchSize;
+
+    record ProgressKey(Long videoId, Long studentId) {}
+
+    // What a flush is writing for an entry, compared afterwards to see whether it changed meanwhile
+    private record Snapshot(ProgressKey key, long position, boolean completed, long lastHeartbeat) {}
+
+    private static class Progress {
+        long position;
+        boolean completed;
+        long lastHeartbeat;
+        long lastPersisted;
+        boolean dirty;
+    }
+
+    private ConcurrentHashMap<ProgressKey, Progress>[] shards;
+    private String upsertSql;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() throws Exception {
+        int count = Integer.highestOneBit(Math.max(1, shardCount));
+        this.shards = new ConcurrentHashMap[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            this.upsertSql = "H2".equalsIgnoreCase(product) ? H2_UPSERT : POSTGRES_UPSERT;
+        }
+    }
+
+    /**
+     * Records a heartbeat. Position only moves forward; completion is sticky.
+     */
+    public void heartbeat(Long videoId, Long studentId, long position, Long duration, boolean completed) {
+        ProgressKey key = new ProgressKey(videoId, studentId);
+        boolean reachedEnd = completed
+                || (duration != null && duration > 0 && position >= duration * completionRatio);
+        long now = System.currentTimeMillis();
+
+        shardFor(key).compute(key, (k, progress) -> {
+            if (progress == null) {
+                progress = new Progress();
+            }
+            if (position > progress.position) {
+                progress.position = position;
+                progress.dirty = true;
+            }
+            if (reachedEnd && !progress.completed) {
+                progress.completed = true;
+                progress.dirty = true;
+            }
+            progress.lastHeartbeat = now;
+            return progress;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${progress.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        try {
+            flush(false);
+        } catch (Exception e) {
+            log.error("Failed to persist watch progress: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush(true);
+    }
+
+    public synchronized void flush(boolean force) {
+        long now = System.currentTimeMillis();
+        List<Snapshot> batch = new ArrayList<>(batchSize);
+
+        for (ConcurrentHashMap<ProgressKey, Progress> shard : shards) {
+            for (ProgressKey key : shard.keySet()) {
+                shard.computeIfPresent(key, (k, progress) -> {
+                    if (progress.dirty && (force || now - progress.lastPersisted >= persistIntervalMs)) {
+                        // stays dirty until the batch is written
+                        batch.add(new Snapshot(k, progress.position, progress.completed, progress.lastHeartbeat));
+                        return progress;
+                    }
+                    if (!progress.dirty && now - progress.lastHeartbeat >= idleTimeoutMs) {
+                        return null;
+                    }
+                    return progress;
+                });
+                if (batch.size() >= batchSize) {
+                    write(batch, now);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch, now);
+        }
+    }
+
+    /**
+     * Writes one batch. On success the entries are marked clean unless a
+     * heartbeat moved them meanwhile; on failure they stay dirty and are
+     * retried on the next flush.
+     */
+    private void write(List<Snapshot> batch, long now) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Snapshot snapshot : batch) {
+            rows.add(new Object[]{snapshot.key().videoId(), snapshot.key().studentId(),
+                    new Timestamp(snapshot.lastHeartbeat()), snapshot.position(), snapshot.completed()});
+        }
+        try {
+            jdbcTemplate.batchUpdate(upsertSql, rows);
+        } catch (DataAccessException e) {
+            log.error("Failed to persist watch progress of " + batch.size()
+                    + " viewers, retrying on the next flush: " + e.getMessage());
+            return;
+        }
+        for (Snapshot snapshot : batch) {
+            shardFor(snapshot.key()).computeIfPresent(snapshot.key(), (k, progress) -> {
+                if (progress.position == snapshot.position() && progress.completed == snapshot.completed()) {
+                    progress.dirty = false;
+                }
+                progress.lastPersisted = now;
+                return progress;
+            });
+        }
+    }
+
+    private ConcurrentHashMap<ProgressKey, Progress> shardFor(ProgressKey key) {
+        int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+}
@@ -0,0 +1,298 @@
+package com.espacodosaber.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * S3 / MinIO backed storage.
+ *
+ * Large objects are sent as multipart uploads with up to
+ * storage.s3.upload-parallelism parts in flight. Parts of a staged file are
+ * read straight from their offsets; parts of a stream are buffered one part
+ * at a time, so memory is bounded by part-size x parallelism.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+public class S3VideoStorage implements VideoStorage {
+
+    @Value("${storage.s3.endpoint:http://video-storage:9000}")
+    private String endpoint;
+
+    @Value("${storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${storage.s3.bucket:video-storage}")
+    private String bucket;
+
+    @Value("${storage.s3.access-key:minioadmin}")
+    private String accessKey;
+
+    @Value("${storage.s3.secret-key:minioadmin}")
+    private String secretKey;
+
+    @Value("${storage.s3.path-style:true}")
+    private boolean pathStyle;
+
+    @Value("${storage.s3.part-size:8388608}")
+    private int partSize;
+
+    @Value("${storage.s3.upload-parallelism:4}")
+    private int uploadParallelism;
+
+    private S3Client s3;
+    private S3Presigner presigner;
+    private ExecutorService partUploadPool;
+
+    @PostConstruct
+    public void init() {
+        StaticCredentialsProvider credentials = StaticCredentialsProvider.create(
+                AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration s3Configuration = S3Configuration.builder()
+                .pathStyleAccessEnabled(pathStyle)
+                .build();
+
+        this.s3 = S3Client.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(s3Configuration)
+                .build();
+        this.presigner = S3Presigner.builder()
+                .endpointOverride(URI.create(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(s3Configuration)
+                .build();
+        this.partUploadPool = Executors.newFixedThreadPool(uploadParallelism);
+
+        initializeBucket();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        partUploadPool.shutdown();
+        presigner.close();
+        s3.close();
+    }
+
+    private void initializeBucket() {
+        try {
+            s3.headBucket(HeadBucketRequest.builder().bucket(bucket).build());
+        } catch (NoSuchBucketException e) {
+            log.info("Creating storage bucket: " + bucket);
+            s3.createBucket(CreateBucketRequest.builder().bucket(bucket).build());
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream data, long size, String contentType) throws IOException {
+        if (size >= 0 && size <= partSize) {
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentType(contentType).build(),
+                    RequestBody.fromInputStream(data, size));
+            return;
+        }
+
+        multipartUpload(key, contentType, partNumber -> {
+            byte[] buffer = data.readNBytes(partSize);
+            if (buffer.length == 0) {
+                return null;
+            }
+            return RequestBody.fromBytes(buffer);
+        });
+    }
+
+    @Override
+    public void putFile(String key, Path source, String contentType) throws IOException {
+        long size = Files.size(source);
+        if (size <= partSize) {
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentType(contentType).build(),
+                    RequestBody.fromFile(source));
+        } else {
+            multipartUpload(key, contentType, partNumber -> {
+                long offset = (long) (partNumber - 1) * partSize;
+                if (offset >= size) {
+                    return null;
+                }
+                long length = Math.min(partSize, size - offset);
+                return RequestBody.fromContentProvider(
+                        () -> openRange(source, offset, length), length, "application/octet-stream");
+            });
+        }
+        // Only once the object is stored: a failed upload leaves the staged file for a retry
+        Files.deleteIfExists(source);
+    }
+
+    @Override
+    public InputStream getRange(String key, long offset, long length) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1))
+                    .build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to read " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<String> presignedUrl(String key, Duration ttl) {
+        GetObjectPresignRequest request = GetObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .getObjectRequest(GetObjectRequest.builder().bucket(bucket).key(key).build())
+                .build();
+        return Optional.of(presigner.presignGetObject(request).url().toString());
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (S3Exception e) {
+            throw new IOException("Failed to delete " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<StoredObject> stat(String key) throws IOException {
+        try {
+            HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            return Optional.of(new StoredObject(key, head.contentLength(), head.lastModified(),
+                    head.eTag(), head.contentType()));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return Optional.empty();
+            }
+            throw new IOException("Failed to stat " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartSource {
+        /**
+         * Body of the given 1-based part, or null when there are no more parts.
+         */
+        RequestBody next(int partNumber) throws IOException;
+    }
+
+    private void multipartUpload(String key, String contentType, PartSource parts) throws IOException {
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+
+        Semaphore permits = new Semaphore(uploadParallelism);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+        try {
+            for (int partNumber = 1; ; partNumber++) {
+                // Bounds the number of parts (and buffered bytes) in flight
+                permits.acquire();
+                RequestBody body;
+                try {
+                    body = parts.next(partNumber);
+                } catch (IOException | RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+                if (body == null) {
+                    permits.release();
+                    break;
+                }
+
+                int number = partNumber;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        UploadPartResponse response = s3.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(number)
+                                .build(), body);
+                        return CompletedPart.builder().partNumber(number).eTag(response.eTag()).build();
+                    } finally {
+                        permits.release();
+                    }
+                }, partUploadPool));
+            }
+
+            List<CompletedPart> completed = new ArrayList<>(futures.size());
+            for (CompletableFuture<CompletedPart> future : futures) {
+                completed.add(future.join());
+            }
+            completed.sort(Comparator.comparing(CompletedPart::partNumber));
+
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(key, uploadId);
+            throw new IOException("Interrupted while uploading " + key, e);
+        } catch (IOException | RuntimeException e) {
+            abort(key, uploadId);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Multipart upload of " + key + " failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Failed to abort multipart upload " + uploadId + ": " + e.getMessage());
+        }
+    }
+
+    private static InputStream openRange(Path file, long offset, long length) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(offset);
+            return new BoundedInputStream(Channels.newInputStream(channel), length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open " + file, e);
+        }
+    }
+}
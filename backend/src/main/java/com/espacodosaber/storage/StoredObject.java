@@ -0,0 +1,8 @@
+package com.espacodosaber.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a stored object.
+ */
+public record StoredObject(String key, long size, Instant lastModified, String etag, String contentType) {}
@@ -0,0 +1,52 @@
+package com.espacodosaber.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Object storage for video files and derived assets.
+ *
+ * Keys are relative, slash separated paths such as "videos/<uuid>.mp4".
+ * The implementation is selected with storage.type (local | s3).
+ */
+public interface VideoStorage {
+
+    /**
+     * Streams data into the object at key.
+     *
+     * @param size content length, or -1 when unknown
+     */
+    void put(String key, InputStream data, long size, String contentType) throws IOException;
+
+    /**
+     * Stores a file that has already been staged on local disk. The source
+     * file is consumed (moved or deleted) once it is stored; when this call
+     * fails it is left in place.
+     */
+    void putFile(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * Opens a stream over {@code length} bytes starting at {@code offset}.
+     */
+    InputStream getRange(String key, long offset, long length) throws IOException;
+
+    /**
+     * Short-lived direct URL to the object, when the backend supports it.
+     */
+    Optional<String> presignedUrl(String key, Duration ttl);
+
+    void delete(String key) throws IOException;
+
+    Optional<StoredObject> stat(String key) throws IOException;
+
+    /**
+     * Local file backing the object, when there is one. Lets callers use
+     * zero-copy transfers (FileChannel.transferTo, sendfile).
+     */
+    default Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+}
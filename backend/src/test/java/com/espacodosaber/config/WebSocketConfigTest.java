@@ -0,0 +1,216 @@
+package com.espacodosaber.config;
+
+import com.espacodosaber.dto.ChatMessageView;
+import com.espacodosaber.model.ChatMessage;
+import com.espacodosaber.model.User;
+import com.espacodosaber.service.ChatMessageRouter;
+import com.espacodosaber.service.ChatSubscriptionRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Broker selection, and relay mode against an embedded Artemis STOMP broker:
+ * two relay handlers configured by WebSocketConfig stand in for two
+ * backend replicas sharing the broker.
+ */
+class WebSocketConfigTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private EmbeddedActiveMQ artemis;
+    private int stompPort;
+    private Node nodeA;
+    private Node nodeB;
+
+    /**
+     * One backend replica: its client and broker channels and the relay
+     * handler WebSocketConfig set up for them. Frames the relay sends to
+     * clients are queued for the assertions.
+     */
+    private static final class Node {
+        final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final BlockingQueue<Message<?>> toClients = new LinkedBlockingQueue<>();
+        StompBrokerRelayMessageHandler relay;
+
+        Node() {
+            clientOutbound.subscribe(toClients::add);
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            stompPort = socket.getLocalPort();
+        }
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        // /topic/* multicast and /queue/* anycast, as the Spring relay expects
+        configuration.addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort
+                + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+        artemis = new EmbeddedActiveMQ();
+        artemis.setConfiguration(configuration);
+        artemis.start();
+
+        nodeA = startRelayNode();
+        nodeB = startRelayNode();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Node node : new Node[]{nodeA, nodeB}) {
+            if (node != null && node.relay != null) {
+                node.relay.stop();
+            }
+        }
+        if (artemis != null) {
+            artemis.stop();
+        }
+    }
+
+    @Test
+    void simpleModeUsesInMemoryBroker() {
+        WebSocketConfig config = config("simple");
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        MessageBrokerRegistry registry = new MessageBrokerRegistry(
+                new ExecutorSubscribableChannel(), new ExecutorSubscribableChannel());
+
+        config.configureMessageBroker(registry);
+
+        SimpleBrokerMessageHandler simple = ReflectionTestUtils.invokeMethod(registry, "getSimpleBroker", brokerChannel);
+        StompBrokerRelayMessageHandler relay = ReflectionTestUtils.invokeMethod(registry, "getStompBrokerRelay", brokerChannel);
+        assertThat(simple).isNotNull();
+        assertThat(relay).isNull();
+    }
+
+    @Test
+    void relayModeConnectsToConfiguredBroker() {
+        assertThat(nodeA.relay.getRelayHost()).isEqualTo("127.0.0.1");
+        assertThat(nodeA.relay.getRelayPort()).isEqualTo(stompPort);
+        assertThat(nodeA.relay.getUserDestinationBroadcast()).isEqualTo("/topic/unresolved-user-destination");
+        assertThat(nodeA.relay.getUserRegistryBroadcast()).isEqualTo("/topic/simp-user-registry");
+        assertThat(nodeA.relay.isBrokerAvailable()).isTrue();
+    }
+
+    @Test
+    void roomMessagePublishedOnOneNodeReachesSubscriberOnAnother() throws Exception {
+        String room = ChatSubscriptionRegistry.videoRoom(7L);
+        connect(nodeB, "viewer-session");
+        subscribe(nodeB, "viewer-session", "sub-1", room);
+
+        // node A has no local subscriber to the room; in relay mode it publishes anyway
+        ChatMessageRouter router = new ChatMessageRouter();
+        SimpMessagingTemplate template = new SimpMessagingTemplate(nodeA.brokerChannel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        ReflectionTestUtils.setField(router, "messagingTemplate", template);
+        ReflectionTestUtils.setField(router, "subscriptionRegistry", new ChatSubscriptionRegistry());
+        ReflectionTestUtils.setField(router, "brokerMode", "relay");
+
+        User sender = new User();
+        sender.setId(1L);
+        sender.setUsername("professor");
+        ChatMessage message = new ChatMessage();
+        message.setId(42L);
+        message.setSender(sender);
+        message.setMessage("Bem-vindos");
+        message.setVideoId(7L);
+        router.route(message, new ChatMessageView(42L, 1L, "professor", null, null,
+                "Bem-vindos", 7L, System.currentTimeMillis(), false));
+
+        Message<?> delivered = awaitFrame(nodeB, StompCommand.MESSAGE);
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(delivered);
+        assertThat(headers.getSessionId()).isEqualTo("viewer-session");
+        assertThat(headers.getSubscriptionId()).isEqualTo("sub-1");
+        assertThat(new String((byte[]) delivered.getPayload(), StandardCharsets.UTF_8)).contains("Bem-vindos");
+    }
+
+    // --- helpers --------------------------------------------------------------
+
+    private WebSocketConfig config(String mode) {
+        WebSocketConfig config = new WebSocketConfig();
+        ReflectionTestUtils.setField(config, "brokerMode", mode);
+        ReflectionTestUtils.setField(config, "relayHost", "127.0.0.1");
+        ReflectionTestUtils.setField(config, "relayPort", stompPort);
+        ReflectionTestUtils.setField(config, "relayLogin", "guest");
+        ReflectionTestUtils.setField(config, "relayPasscode", "guest");
+        ReflectionTestUtils.setField(config, "relayVirtualHost", "");
+        ReflectionTestUtils.setField(config, "cacheLimit", 4096);
+        return config;
+    }
+
+    private Node startRelayNode() throws InterruptedException {
+        Node node = new Node();
+        MessageBrokerRegistry registry = new MessageBrokerRegistry(node.clientInbound, node.clientOutbound);
+        config("relay").configureMessageBroker(registry);
+        node.relay = ReflectionTestUtils.invokeMethod(registry, "getStompBrokerRelay", node.brokerChannel);
+        node.relay.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!node.relay.isBrokerAvailable()) {
+            assertThat(System.nanoTime()).as("relay system session connected").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+        return node;
+    }
+
+    private void connect(Node node, String sessionId) throws InterruptedException {
+        StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+        connect.setSessionId(sessionId);
+        connect.setAcceptVersion("1.2");
+        connect.setHeartbeat(0, 0);
+        send(node, connect);
+        awaitFrame(node, StompCommand.CONNECTED);
+    }
+
+    private void subscribe(Node node, String sessionId, String subscriptionId, String destination)
+            throws InterruptedException {
+        StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        subscribe.setSessionId(sessionId);
+        subscribe.setSubscriptionId(subscriptionId);
+        subscribe.setDestination(destination);
+        // the broker confirms once the subscription is registered
+        subscribe.setReceipt("subscribed-" + subscriptionId);
+        send(node, subscribe);
+        awaitFrame(node, StompCommand.RECEIPT);
+    }
+
+    private static void send(Node node, StompHeaderAccessor headers) {
+        headers.setLeaveMutable(true);
+        node.clientInbound.send(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+    }
+
+    private static Message<?> awaitFrame(Node node, StompCommand command) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (true) {
+            Message<?> frame = node.toClients.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            assertThat(frame).as("STOMP " + command + " frame").isNotNull();
+            if (StompHeaderAccessor.wrap(frame).getCommand() == command) {
+                return frame;
+            }
+        }
+    }
+}
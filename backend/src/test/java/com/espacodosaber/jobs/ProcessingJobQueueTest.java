@@ -0,0 +1,179 @@
+package com.espacodosaber.jobs;
+
+import com.espacodosaber.jobs.ProcessingJobQueue.ClaimedJob;
+import com.espacodosaber.model.ProcessingJobType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Claim, retry with backoff, permanent failure and lease expiry against an
+ * in-memory H2 database, with deadlines checked against the database clock.
+ */
+class ProcessingJobQueueTest {
+
+    private static final long LEASE_MS = 60_000;
+    private static final long BACKOFF_MS = 900_000;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ProcessingJobQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:jobs-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE processing_jobs (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "type VARCHAR(32) NOT NULL, video_id BIGINT NOT NULL, priority INT NOT NULL, " +
+                "status VARCHAR(16) NOT NULL, attempts INT NOT NULL, max_attempts INT NOT NULL, " +
+                "run_after TIMESTAMP NOT NULL, lease_owner VARCHAR(64), lease_expires_at TIMESTAMP, " +
+                "last_error VARCHAR(2000), created_at TIMESTAMP NOT NULL, started_at TIMESTAMP, " +
+                "finished_at TIMESTAMP)");
+
+        queue = new ProcessingJobQueue();
+        ReflectionTestUtils.setField(queue, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(queue, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(queue, "dataSource", dataSource);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 2);
+        queue.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void retriesAfterBackoffThenFailsAtMaxAttempts() {
+        assertThat(queue.enqueue(ProcessingJobType.METADATA, 1L, 0)).isTrue();
+        // already queued
+        assertThat(queue.enqueue(ProcessingJobType.METADATA, 1L, 0)).isFalse();
+
+        ClaimedJob first = single(queue.claim(ProcessingJobType.METADATA, 10, "node-a", LEASE_MS));
+        assertThat(first.videoId()).isEqualTo(1L);
+        assertThat(first.attempts()).isEqualTo(1);
+        assertThat(status(first)).isEqualTo("RUNNING");
+        assertThat(untilDeadline(first, "lease_expires_at")).isBetween(Duration.ofSeconds(55), Duration.ofMillis(LEASE_MS));
+        // already running
+        assertThat(queue.enqueue(ProcessingJobType.METADATA, 1L, 0)).isFalse();
+
+        queue.fail(first, "node-a", "ffprobe crashed", BACKOFF_MS);
+        assertThat(status(first)).isEqualTo("QUEUED");
+        assertThat(untilDeadline(first, "run_after")).isBetween(Duration.ofSeconds(895), Duration.ofMillis(BACKOFF_MS));
+        // not runnable during the backoff
+        assertThat(queue.claim(ProcessingJobType.METADATA, 10, "node-a", LEASE_MS)).isEmpty();
+
+        backoffElapsed(first);
+        ClaimedJob second = single(queue.claim(ProcessingJobType.METADATA, 10, "node-a", LEASE_MS));
+        assertThat(second.id()).isEqualTo(first.id());
+        assertThat(second.attempts()).isEqualTo(2);
+
+        queue.fail(second, "node-a", "ffprobe crashed again", BACKOFF_MS);
+        assertThat(status(second)).isEqualTo("FAILED");
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM processing_jobs WHERE id = ?", String.class,
+                second.id())).isEqualTo("ffprobe crashed again");
+        assertThat(jdbcTemplate.queryForObject("SELECT finished_at IS NOT NULL FROM processing_jobs WHERE id = ?",
+                Boolean.class, second.id())).isTrue();
+        backoffElapsed(second);
+        assertThat(queue.claim(ProcessingJobType.METADATA, 10, "node-a", LEASE_MS)).isEmpty();
+        // a failed job no longer blocks a new one
+        assertThat(queue.enqueue(ProcessingJobType.METADATA, 1L, 0)).isTrue();
+    }
+
+    @Test
+    void claimsHighestPriorityFirstAndOnlyTheRequestedType() {
+        queue.enqueue(ProcessingJobType.HLS, 1L, 0);
+        queue.enqueue(ProcessingJobType.HLS, 2L, 100);
+        queue.enqueue(ProcessingJobType.THUMBNAIL, 3L, 1000);
+
+        assertThat(queue.claim(ProcessingJobType.HLS, 1, "node-a", LEASE_MS))
+                .extracting(ClaimedJob::videoId).containsExactly(2L);
+        assertThat(queue.claim(ProcessingJobType.HLS, 10, "node-b", LEASE_MS))
+                .extracting(ClaimedJob::videoId).containsExactly(1L);
+        assertThat(queue.claim(ProcessingJobType.HLS, 10, "node-b", LEASE_MS)).isEmpty();
+    }
+
+    @Test
+    void reapsExpiredLeasesAndIgnoresTheFormerOwner() {
+        queue.enqueue(ProcessingJobType.THUMBNAIL, 1L, 0);
+        ClaimedJob stuck = single(queue.claim(ProcessingJobType.THUMBNAIL, 10, "node-a", LEASE_MS));
+        assertThat(queue.reapExpiredLeases()).isZero();
+
+        queue.renew(List.of(stuck.id()), "node-b", 1);
+        assertThat(untilDeadline(stuck, "lease_expires_at")).isGreaterThan(Duration.ofSeconds(55));
+
+        leaseExpired(stuck);
+        assertThat(queue.reapExpiredLeases()).isEqualTo(1);
+        assertThat(status(stuck)).isEqualTo("QUEUED");
+        assertThat(jdbcTemplate.queryForObject("SELECT last_error FROM processing_jobs WHERE id = ?", String.class,
+                stuck.id())).isEqualTo("Lease expired");
+
+        // runnable straight away on another node; the stale owner cannot finish it
+        ClaimedJob retry = single(queue.claim(ProcessingJobType.THUMBNAIL, 10, "node-b", LEASE_MS));
+        assertThat(retry.attempts()).isEqualTo(2);
+        queue.complete(stuck, "node-a");
+        assertThat(status(retry)).isEqualTo("RUNNING");
+
+        // expiring on the last attempt fails the job for good
+        leaseExpired(retry);
+        assertThat(queue.reapExpiredLeases()).isEqualTo(1);
+        assertThat(status(retry)).isEqualTo("FAILED");
+    }
+
+    @Test
+    void completeClearsTheLease() {
+        queue.enqueue(ProcessingJobType.METADATA, 1L, 0);
+        ClaimedJob job = single(queue.claim(ProcessingJobType.METADATA, 10, "node-a", LEASE_MS));
+
+        queue.complete(job, "node-a");
+
+        assertThat(status(job)).isEqualTo("SUCCEEDED");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM processing_jobs " +
+                "WHERE lease_owner IS NULL AND lease_expires_at IS NULL AND finished_at IS NOT NULL", Integer.class))
+                .isEqualTo(1);
+        leaseExpired(job);
+        assertThat(queue.reapExpiredLeases()).isZero();
+    }
+
+    // --- helpers ---
+
+    private static ClaimedJob single(List<ClaimedJob> jobs) {
+        assertThat(jobs).hasSize(1);
+        return jobs.get(0);
+    }
+
+    private String status(ClaimedJob job) {
+        return jdbcTemplate.queryForObject("SELECT status FROM processing_jobs WHERE id = ?", String.class, job.id());
+    }
+
+    /**
+     * Time from the database's LOCALTIMESTAMP to the given deadline column.
+     */
+    private Duration untilDeadline(ClaimedJob job, String column) {
+        return jdbcTemplate.queryForObject("SELECT " + column + ", LOCALTIMESTAMP FROM processing_jobs WHERE id = ?",
+                (rs, i) -> Duration.between(rs.getTimestamp(2).toLocalDateTime(), rs.getTimestamp(1).toLocalDateTime()),
+                job.id());
+    }
+
+    private void backoffElapsed(ClaimedJob job) {
+        jdbcTemplate.update("UPDATE processing_jobs SET run_after = LOCALTIMESTAMP - INTERVAL '1' SECOND WHERE id = ?",
+                job.id());
+    }
+
+    private void leaseExpired(ClaimedJob job) {
+        jdbcTemplate.update("UPDATE processing_jobs SET lease_expires_at = LOCALTIMESTAMP - INTERVAL '1' SECOND " +
+                "WHERE id = ?", job.id());
+    }
+}
@@ -0,0 +1,202 @@
+package com.espacodosaber.media;
+
+import com.espacodosaber.media.Mp4Boxes.Box;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.espacodosaber.media.Mp4Samples.AUDIO_DELTA;
+import static com.espacodosaber.media.Mp4Samples.AUDIO_SAMPLES;
+import static com.espacodosaber.media.Mp4Samples.AUDIO_TIMESCALE;
+import static com.espacodosaber.media.Mp4Samples.AUDIO_TRACK_ID;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_CTTS;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_DELTA;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_EDIT_MEDIA_TIME;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_SAMPLES;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_TIMESCALE;
+import static com.espacodosaber.media.Mp4Samples.VIDEO_TRACK_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Sample tables, segment plans and fMP4 output for the generated lecture in
+ * Mp4Samples (keyframes at samples 0, 4 and 8, 40 ms per video sample).
+ */
+class FragmentedMp4WriterTest {
+
+    private static final int VIDEO = 0;
+    private static final int AUDIO = 1;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1})
+    void readsSampleTablesAndEditList(int boxVersion) throws IOException {
+        byte[] file = Mp4Samples.lecture(boxVersion, boxVersion == 1);
+        List<Mp4Track> tracks = Mp4Track.readTracks(Mp4Samples.reader(file), file.length);
+
+        assertThat(tracks).hasSize(2);
+        Mp4Track video = tracks.get(VIDEO);
+        assertThat(video.trackId).isEqualTo(VIDEO_TRACK_ID);
+        assertThat(video.isVideo()).isTrue();
+        assertThat(video.timescale).isEqualTo(VIDEO_TIMESCALE);
+        assertThat(video.sampleCount).isEqualTo(VIDEO_SAMPLES);
+        assertThat(video.endTime()).isEqualTo((long) VIDEO_SAMPLES * VIDEO_DELTA);
+        assertThat(video.compositionShift).isEqualTo(-VIDEO_EDIT_MEDIA_TIME);
+        for (int i = 0; i < VIDEO_SAMPLES; i++) {
+            assertThat(video.decodeTimes[i]).isEqualTo((long) i * VIDEO_DELTA);
+            assertThat(video.durations[i]).isEqualTo(VIDEO_DELTA);
+            assertThat(video.compositionOffsets[i]).isEqualTo(VIDEO_CTTS[i % VIDEO_CTTS.length]);
+            assertThat(video.isSync(i)).isEqualTo(i % 4 == 0);
+            assertThat(slice(file, video.offsets[i], video.sizes[i])).isEqualTo(Mp4Samples.videoSample(i));
+        }
+
+        Mp4Track audio = tracks.get(AUDIO);
+        assertThat(audio.trackId).isEqualTo(AUDIO_TRACK_ID);
+        assertThat(audio.isAudio()).isTrue();
+        assertThat(audio.timescale).isEqualTo(AUDIO_TIMESCALE);
+        assertThat(audio.sampleCount).isEqualTo(AUDIO_SAMPLES);
+        assertThat(audio.compositionShift).isZero();
+        for (int i = 0; i < AUDIO_SAMPLES; i++) {
+            assertThat(audio.decodeTimes[i]).isEqualTo((long) i * AUDIO_DELTA);
+            assertThat(audio.isSync(i)).isTrue();
+            assertThat(slice(file, audio.offsets[i], audio.sizes[i])).isEqualTo(Mp4Samples.audioSample(i));
+        }
+    }
+
+    @Test
+    void cutsAtTheFirstKeyframePastTheTarget() throws IOException {
+        HlsPlan plan = HlsPlan.build(tracks(), 0.3);
+
+        // sample 4 (160 ms) is too early, sample 8 (320 ms) starts the second segment
+        assertThat(plan.segments).hasSize(2);
+        assertSegment(plan.segments.get(0), 0.0, 0.32, new int[]{0, 0}, new int[]{8, 15});
+        assertSegment(plan.segments.get(1), 0.32, 0.16, new int[]{8, 15}, new int[]{12, AUDIO_SAMPLES});
+        assertThat(plan.targetDurationSeconds()).isEqualTo(1);
+
+        HlsPlan shortSegments = HlsPlan.build(tracks(), 0.1);
+        assertThat(shortSegments.segments).hasSize(3);
+        assertSegment(shortSegments.segments.get(0), 0.0, 0.16, new int[]{0, 0}, new int[]{4, 8});
+        assertSegment(shortSegments.segments.get(1), 0.16, 0.16, new int[]{4, 8}, new int[]{8, 15});
+        assertSegment(shortSegments.segments.get(2), 0.32, 0.16, new int[]{8, 15}, new int[]{12, AUDIO_SAMPLES});
+    }
+
+    @Test
+    void moofDescribesTheSamplesOfItsMdat() throws IOException {
+        byte[] file = Mp4Samples.lecture(0, false);
+        HlsPlan plan = HlsPlan.build(tracks(), 0.3);
+
+        for (HlsPlan.Segment segment : plan.segments) {
+            byte[] moof = FragmentedMp4Writer.moof(plan.tracks, segment);
+            long payloadSize = FragmentedMp4Writer.mdatPayloadSize(plan.tracks, segment);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(moof);
+            out.writeBytes(FragmentedMp4Writer.mdatHeader(payloadSize));
+            // a buffer smaller than one sample forces several reads per run
+            FragmentedMp4Writer.writeSamples(plan.tracks, segment, Mp4Samples.reader(file), out, 7);
+            byte[] bytes = out.toByteArray();
+            PositionedReader reader = Mp4Samples.reader(bytes);
+
+            List<Box> top = Mp4Boxes.children(reader, 0, bytes.length);
+            assertThat(top).extracting(Box::type).containsExactly("moof", "mdat");
+            assertThat(top.get(0).size()).isEqualTo(moof.length);
+            assertThat(top.get(1).payloadSize()).isEqualTo(payloadSize);
+            assertThat(bytes).hasSize(moof.length + 8 + (int) payloadSize);
+
+            Box moofBox = top.get(0);
+            assertThat(payload(reader, Mp4Boxes.find(reader, moofBox, "mfhd")).getInt(4))
+                    .isEqualTo(segment.index() + 1);
+            List<Box> trafs = Mp4Boxes.children(reader, moofBox.payloadStart(), moofBox.end()).stream()
+                    .filter(box -> box.type().equals("traf"))
+                    .toList();
+            assertThat(trafs).hasSize(2);
+            for (int t = 0; t < trafs.size(); t++) {
+                assertTraf(reader, bytes, trafs.get(t), plan.tracks.get(t), segment.start()[t], segment.end()[t]);
+            }
+        }
+    }
+
+    @Test
+    void initSegmentDescribesTheTracksWithoutSamples() throws IOException {
+        byte[] init = FragmentedMp4Writer.initSegment(tracks());
+        PositionedReader reader = Mp4Samples.reader(init);
+
+        assertThat(Mp4Boxes.children(reader, 0, init.length)).extracting(Box::type).containsExactly("ftyp", "moov");
+        Box mvex = Mp4Boxes.find(reader, Mp4Boxes.find(reader, 0, init.length, "moov"), "mvex");
+        List<Box> trex = Mp4Boxes.children(reader, mvex.payloadStart(), mvex.end());
+        assertThat(trex).extracting(Box::type).containsExactly("trex", "trex");
+        assertThat(payload(reader, trex.get(0)).getInt(4)).isEqualTo(VIDEO_TRACK_ID);
+        assertThat(payload(reader, trex.get(1)).getInt(4)).isEqualTo(AUDIO_TRACK_ID);
+
+        // the header boxes are copied as they are, the sample tables are empty
+        List<Mp4Track> described = Mp4Track.readTracks(reader, init.length);
+        assertThat(described).extracting(track -> track.trackId).containsExactly(VIDEO_TRACK_ID, AUDIO_TRACK_ID);
+        assertThat(described).extracting(track -> track.timescale)
+                .containsExactly((long) VIDEO_TIMESCALE, (long) AUDIO_TIMESCALE);
+        assertThat(described).allSatisfy(track -> assertThat(track.sampleCount).isZero());
+        assertThat(Mp4MetadataParser.parse(reader, init.length)).hasValueSatisfying(metadata ->
+                assertThat(metadata.videoCodec()).isEqualTo(Mp4Samples.VIDEO_CODEC));
+    }
+
+    // --- helpers ---
+
+    private static List<Mp4Track> tracks() throws IOException {
+        byte[] file = Mp4Samples.lecture(0, false);
+        return Mp4Track.readTracks(Mp4Samples.reader(file), file.length);
+    }
+
+    private static void assertSegment(HlsPlan.Segment segment, double startSeconds, double durationSeconds,
+                                      int[] start, int[] end) {
+        assertThat(segment.startSeconds()).isCloseTo(startSeconds, within(1e-9));
+        assertThat(segment.durationSeconds()).isCloseTo(durationSeconds, within(1e-9));
+        assertThat(segment.start()).containsExactly(start);
+        assertThat(segment.end()).containsExactly(end);
+    }
+
+    /**
+     * tfhd, tfdt and trun of one track fragment, and the sample bytes its data offsets point at.
+     */
+    private static void assertTraf(PositionedReader reader, byte[] segmentBytes, Box traf, Mp4Track track,
+                                   int from, int to) throws IOException {
+        assertThat(payload(reader, Mp4Boxes.find(reader, traf, "tfhd")).getInt(4)).isEqualTo(track.trackId);
+
+        ByteBuffer tfdt = payload(reader, Mp4Boxes.find(reader, traf, "tfdt"));
+        assertThat(tfdt.get(0)).isEqualTo((byte) 1);
+        assertThat(tfdt.getLong(4)).isEqualTo(track.decodeTimes[from]);
+
+        ByteBuffer trun = payload(reader, Mp4Boxes.find(reader, traf, "trun"));
+        assertThat(trun.get(0)).as("signed composition offsets").isEqualTo((byte) 1);
+        assertThat(trun.getInt(4)).isEqualTo(to - from);
+        // the moof starts the segment, so offsets relative to it index the segment bytes
+        long dataOffset = trun.getInt(8);
+        for (int i = from; i < to; i++) {
+            int entry = 12 + (i - from) * 16;
+            assertThat(trun.getInt(entry)).isEqualTo(track.durations[i]);
+            assertThat(trun.getInt(entry + 4)).isEqualTo(track.sizes[i]);
+            assertThat(trun.getInt(entry + 8)).isEqualTo(track.isSync(i) ? 0x02000000 : 0x01010000);
+            assertThat(trun.getInt(entry + 12))
+                    .isEqualTo(track.compositionOffsets[i] + (int) track.compositionShift);
+            byte[] expected = track.isVideo() ? Mp4Samples.videoSample(i) : Mp4Samples.audioSample(i);
+            assertThat(slice(segmentBytes, dataOffset, track.sizes[i])).isEqualTo(expected);
+            dataOffset += track.sizes[i];
+        }
+        if (track.isVideo() && from == 0) {
+            // the edit list moves the first frame to presentation time 0
+            assertThat(trun.getInt(12 + 12)).isZero();
+            assertThat(trun.getInt(12 + 2 * 16 + 12)).isNegative();
+        }
+    }
+
+    private static ByteBuffer payload(PositionedReader reader, Box box) throws IOException {
+        assertThat(box).isNotNull();
+        return Mp4Boxes.read(reader, box.payloadStart(), (int) box.payloadSize());
+    }
+
+    private static byte[] slice(byte[] bytes, long offset, int length) {
+        return Arrays.copyOfRange(bytes, (int) offset, (int) offset + length);
+    }
+}
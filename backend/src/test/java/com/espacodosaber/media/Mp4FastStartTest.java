@@ -0,0 +1,192 @@
+package com.espacodosaber.media;
+
+import com.espacodosaber.media.Mp4Boxes.Box;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.espacodosaber.media.Mp4Samples.box;
+import static com.espacodosaber.media.Mp4Samples.concat;
+import static com.espacodosaber.media.Mp4Samples.reader;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rewrites of small generated MP4 files: ftyp, an mdat with three chunks and
+ * a moov whose tracks point at them through stco and co64.
+ */
+class Mp4FastStartTest {
+
+    private static final int BUFFER_SIZE = 16;
+
+    private static final int CHUNK_SIZE = 100;
+
+    private static final byte[] FTYP = box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII), new byte[4],
+            "isom".getBytes(StandardCharsets.US_ASCII));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void movesTrailingMoovInFrontOfMdatAndShiftsChunkOffsets() throws Exception {
+        byte[] mdat = mdat();
+        long firstChunk = FTYP.length + 8;
+        long[] offsets = {firstChunk, firstChunk + CHUNK_SIZE, firstChunk + 2 * CHUNK_SIZE};
+        byte[] moov = moov(stco(offsets), co64(offsets));
+        Path file = write(FTYP, mdat, moov);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        Mp4FastStart.Outcome outcome = Mp4FastStart.rewrite(file, BUFFER_SIZE, 1 << 20, digest);
+
+        assertThat(outcome).isEqualTo(Mp4FastStart.Outcome.REWRITTEN);
+        byte[] rewritten = Files.readAllBytes(file);
+        assertThat(rewritten).hasSize(FTYP.length + mdat.length + moov.length);
+        assertThat(topLevelTypes(rewritten)).containsExactly("ftyp", "moov", "mdat");
+
+        // every offset, in both tables, still points at its chunk
+        for (long[] table : List.of(readStco(rewritten), readCo64(rewritten))) {
+            assertThat(table).hasSize(3);
+            for (int chunk = 0; chunk < 3; chunk++) {
+                assertThat(table[chunk]).isEqualTo(offsets[chunk] + moov.length);
+                assertThat(Arrays.copyOfRange(rewritten, (int) table[chunk], (int) table[chunk] + CHUNK_SIZE))
+                        .isEqualTo(chunk(chunk));
+            }
+        }
+        assertThat(digest.digest()).isEqualTo(MessageDigest.getInstance("SHA-256").digest(rewritten));
+        try (var files = Files.list(dir)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    void leavesFastStartFileUntouched() throws Exception {
+        // the moov size does not depend on the offset values
+        long firstChunk = FTYP.length + moov(stco(new long[3])).length + 8;
+        long[] offsets = {firstChunk, firstChunk + CHUNK_SIZE, firstChunk + 2 * CHUNK_SIZE};
+        byte[] original = concat(FTYP, moov(stco(offsets)), mdat());
+        Path file = write(original);
+
+        assertThat(Mp4FastStart.rewrite(file, BUFFER_SIZE, 1 << 20, null))
+                .isEqualTo(Mp4FastStart.Outcome.ALREADY_FAST_START);
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    @Test
+    void reportsFilesWithoutMoov() throws Exception {
+        byte[] original = concat(FTYP, mdat());
+        Path file = write(original);
+
+        assertThat(Mp4FastStart.rewrite(file, BUFFER_SIZE, 1 << 20, null))
+                .isEqualTo(Mp4FastStart.Outcome.NOT_MP4);
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    @Test
+    void leavesCompressedMoovUntouched() throws Exception {
+        byte[] original = concat(FTYP, mdat(), box("moov", box("cmov", new byte[16])));
+        Path file = write(original);
+
+        assertThat(Mp4FastStart.rewrite(file, BUFFER_SIZE, 1 << 20, null))
+                .isEqualTo(Mp4FastStart.Outcome.UNSUPPORTED);
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    @Test
+    void leavesOversizedMoovUntouched() throws Exception {
+        long firstChunk = FTYP.length + 8;
+        byte[] moov = moov(stco(new long[]{firstChunk, firstChunk + CHUNK_SIZE, firstChunk + 2 * CHUNK_SIZE}));
+        byte[] original = concat(FTYP, mdat(), moov);
+        Path file = write(original);
+
+        assertThat(Mp4FastStart.rewrite(file, BUFFER_SIZE, moov.length - 1, null))
+                .isEqualTo(Mp4FastStart.Outcome.UNSUPPORTED);
+        assertThat(Files.readAllBytes(file)).isEqualTo(original);
+    }
+
+    // --- sample files ---------------------------------------------------------
+
+    private static byte[] chunk(int index) {
+        byte[] data = new byte[CHUNK_SIZE];
+        Arrays.fill(data, (byte) ('A' + index));
+        return data;
+    }
+
+    private static byte[] mdat() {
+        return box("mdat", chunk(0), chunk(1), chunk(2));
+    }
+
+    private static byte[] moov(byte[]... chunkOffsetTables) {
+        byte[][] traks = new byte[chunkOffsetTables.length][];
+        for (int i = 0; i < chunkOffsetTables.length; i++) {
+            traks[i] = box("trak", box("mdia", box("minf", box("stbl", chunkOffsetTables[i]))));
+        }
+        return box("moov", traks);
+    }
+
+    private static byte[] stco(long[] offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 4);
+        payload.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putInt((int) offset);
+        }
+        return box("stco", payload.array());
+    }
+
+    private static byte[] co64(long[] offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 8);
+        payload.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putLong(offset);
+        }
+        return box("co64", payload.array());
+    }
+
+    private Path write(byte[]... parts) throws IOException {
+        return Files.write(dir.resolve("sample.mp4"), concat(parts));
+    }
+
+    // --- reading the result back ----------------------------------------------
+
+    private static List<String> topLevelTypes(byte[] file) throws IOException {
+        return Mp4Boxes.children(reader(file), 0, file.length).stream().map(Box::type).toList();
+    }
+
+    private static long[] readStco(byte[] file) {
+        ByteBuffer table = table(file, "stco");
+        long[] offsets = new long[table.getInt(4)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Integer.toUnsignedLong(table.getInt(8 + i * 4));
+        }
+        return offsets;
+    }
+
+    private static long[] readCo64(byte[] file) {
+        ByteBuffer table = table(file, "co64");
+        long[] offsets = new long[table.getInt(4)];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = table.getLong(8 + i * 8);
+        }
+        return offsets;
+    }
+
+    /**
+     * Payload of the first box of the given type, found by its fourcc.
+     */
+    private static ByteBuffer table(byte[] file, String type) {
+        byte[] fourcc = type.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 4; i + 4 <= file.length; i++) {
+            if (Arrays.equals(file, i, i + 4, fourcc, 0, 4)) {
+                int size = ByteBuffer.wrap(file, i - 4, 4).getInt();
+                return ByteBuffer.wrap(Arrays.copyOfRange(file, i + 4, i - 4 + size));
+            }
+        }
+        throw new AssertionError(type + " not found");
+    }
+}
@@ -0,0 +1,94 @@
+package com.espacodosaber.media;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.espacodosaber.media.Mp4Samples.box;
+import static com.espacodosaber.media.Mp4Samples.concat;
+import static com.espacodosaber.media.Mp4Samples.reader;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Header facts of the generated lecture in Mp4Samples, with 32 and 64-bit
+ * boxes and the moov before or after the media data.
+ */
+class Mp4MetadataParserTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest
+    @CsvSource({"0, false", "1, false", "0, true", "1, true"})
+    void readsDurationResolutionAndCodecsWithMoovAtTheEnd(int boxVersion, boolean largeMdat) throws Exception {
+        byte[] file = Mp4Samples.lecture(boxVersion, largeMdat);
+
+        Optional<Mp4Metadata> metadata = Mp4MetadataParser.parse(reader(file), file.length);
+
+        assertThat(metadata).hasValueSatisfying(this::assertLecture);
+        assertThat(metadata.get().bitrate(file.length))
+                .isEqualTo(file.length * 8_000L / Mp4Samples.DURATION_MILLIS);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, false", "1, true"})
+    void readsTheSameFactsAfterFastStart(int boxVersion, boolean largeMdat) throws Exception {
+        Path file = Files.write(dir.resolve("lecture.mp4"), Mp4Samples.lecture(boxVersion, largeMdat));
+
+        assertThat(Mp4FastStart.rewrite(file, 16, 1 << 20, null)).isEqualTo(Mp4FastStart.Outcome.REWRITTEN);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertThat(Mp4MetadataParser.parse(channel)).hasValueSatisfying(this::assertLecture);
+        }
+    }
+
+    @Test
+    void keepsTheSampleEntryFourccWithoutAvcC() throws Exception {
+        byte[] hvc1 = box("hvc1", new byte[78]);
+        byte[] file = concat(ftyp(), box("moov",
+                box("trak",
+                        box("mdia",
+                                Mp4Samples.fullBox("hdlr", 0, 0, Mp4Samples.ints(0), ascii("vide"), new byte[12]),
+                                box("minf", box("stbl", Mp4Samples.fullBox("stsd", 0, 0, Mp4Samples.ints(1), hvc1)))))));
+
+        assertThat(Mp4MetadataParser.parse(reader(file), file.length)).hasValueSatisfying(metadata -> {
+            assertThat(metadata.videoCodec()).isEqualTo("hvc1");
+            assertThat(metadata.durationMillis()).isZero();
+            assertThat(metadata.width()).isNull();
+            assertThat(metadata.audioCodec()).isNull();
+            assertThat(metadata.bitrate(file.length)).isNull();
+        });
+    }
+
+    @Test
+    void rejectsFilesWithoutMoov() throws Exception {
+        byte[] file = concat(ftyp(), box("mdat", new byte[64]));
+
+        assertThat(Mp4MetadataParser.parse(reader(file), file.length)).isEmpty();
+    }
+
+    // --- helpers ---
+
+    private void assertLecture(Mp4Metadata metadata) {
+        assertThat(metadata.durationMillis()).isEqualTo(Mp4Samples.DURATION_MILLIS);
+        assertThat(metadata.width()).isEqualTo(Mp4Samples.WIDTH);
+        assertThat(metadata.height()).isEqualTo(Mp4Samples.HEIGHT);
+        assertThat(metadata.videoCodec()).isEqualTo(Mp4Samples.VIDEO_CODEC);
+        assertThat(metadata.audioCodec()).isEqualTo("mp4a");
+    }
+
+    private static byte[] ftyp() {
+        return box("ftyp", ascii("isom"), new byte[4], ascii("isom"));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,262 @@
+package com.espacodosaber.media;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Generated MP4 files for the media tests: a short "lecture" with a 640x360
+ * avc1 video track (B-frames, keyframes every 4 samples, an edit list) and an
+ * mp4a audio track, interleaved in one mdat with the moov at the end.
+ */
+public final class Mp4Samples {
+
+    public static final int MOVIE_TIMESCALE = 1000;
+    public static final int DURATION_MILLIS = 480;
+    public static final int WIDTH = 640;
+    public static final int HEIGHT = 360;
+    public static final String VIDEO_CODEC = "avc1.64001f";
+
+    public static final int VIDEO_TRACK_ID = 1;
+    public static final int VIDEO_TIMESCALE = 1000;
+    public static final int VIDEO_SAMPLES = 12;
+    public static final int VIDEO_DELTA = 40;
+    public static final int[] VIDEO_SYNC = {0, 4, 8};
+    public static final int[] VIDEO_CTTS = {80, 160, 40, 40};
+    // media time the video edit starts at: the first composition offset
+    public static final int VIDEO_EDIT_MEDIA_TIME = 80;
+
+    public static final int AUDIO_TRACK_ID = 2;
+    public static final int AUDIO_TIMESCALE = 48000;
+    public static final int AUDIO_SAMPLES = 23;
+    public static final int AUDIO_DELTA = 1024;
+    public static final int AUDIO_SAMPLE_SIZE = 20;
+
+    // samples per chunk, chunks alternate video / audio in the mdat
+    private static final int[] VIDEO_CHUNKS = {4, 4, 4};
+    private static final int[] AUDIO_CHUNKS = {8, 8, 7};
+
+    private Mp4Samples() {
+    }
+
+    public static int videoSampleSize(int sample) {
+        return 100 + 10 * sample;
+    }
+
+    public static byte[] videoSample(int sample) {
+        byte[] data = new byte[videoSampleSize(sample)];
+        Arrays.fill(data, (byte) sample);
+        return data;
+    }
+
+    public static byte[] audioSample(int sample) {
+        byte[] data = new byte[AUDIO_SAMPLE_SIZE];
+        Arrays.fill(data, (byte) (100 + sample));
+        return data;
+    }
+
+    /**
+     * The sample file with every full box at the given version (0 or 1) and,
+     * when largeMdat is set, a 64-bit mdat header.
+     */
+    public static byte[] lecture(int boxVersion, boolean largeMdat) {
+        byte[] ftyp = box("ftyp", ascii("isom"), ints(0x200), ascii("isom"), ascii("avc1"));
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        long mdatStart = ftyp.length + (largeMdat ? 16 : 8);
+        long[] videoChunks = new long[VIDEO_CHUNKS.length];
+        long[] audioChunks = new long[AUDIO_CHUNKS.length];
+        int videoSample = 0;
+        int audioSample = 0;
+        for (int chunk = 0; chunk < VIDEO_CHUNKS.length; chunk++) {
+            videoChunks[chunk] = mdatStart + payload.size();
+            for (int i = 0; i < VIDEO_CHUNKS[chunk]; i++) {
+                payload.writeBytes(videoSample(videoSample++));
+            }
+            audioChunks[chunk] = mdatStart + payload.size();
+            for (int i = 0; i < AUDIO_CHUNKS[chunk]; i++) {
+                payload.writeBytes(audioSample(audioSample++));
+            }
+        }
+        byte[] mdat = largeMdat ? largeBox("mdat", payload.toByteArray()) : box("mdat", payload.toByteArray());
+
+        byte[] moov = box("moov",
+                mvhd(boxVersion),
+                videoTrak(boxVersion, videoChunks),
+                audioTrak(boxVersion, audioChunks));
+        return concat(ftyp, mdat, moov);
+    }
+
+    // --- tracks ---------------------------------------------------------------
+
+    private static byte[] mvhd(int version) {
+        return fullBox("mvhd", version, 0,
+                times(version, MOVIE_TIMESCALE, DURATION_MILLIS),
+                ints(0x00010000), new byte[]{1, 0}, new byte[10], matrix(), new byte[24],
+                ints(AUDIO_TRACK_ID + 1));
+    }
+
+    private static byte[] videoTrak(int version, long[] chunkOffsets) {
+        int[] sizes = new int[VIDEO_SAMPLES];
+        int[] ctts = new int[VIDEO_SAMPLES * 2];
+        for (int i = 0; i < VIDEO_SAMPLES; i++) {
+            sizes[i] = videoSampleSize(i);
+            ctts[2 * i] = 1;
+            ctts[2 * i + 1] = VIDEO_CTTS[i % VIDEO_CTTS.length];
+        }
+        int[] sync = new int[VIDEO_SYNC.length];
+        for (int i = 0; i < sync.length; i++) {
+            sync[i] = VIDEO_SYNC[i] + 1;
+        }
+        byte[] avcC = box("avcC", new byte[]{1, 0x64, 0, 0x1f, (byte) 0xff, (byte) 0xe0, 0});
+        byte[] avc1 = box("avc1", new byte[6], new byte[]{0, 1}, new byte[16],
+                new byte[]{(byte) (WIDTH >> 8), (byte) WIDTH, (byte) (HEIGHT >> 8), (byte) HEIGHT},
+                ints(0x00480000, 0x00480000, 0), new byte[]{0, 1}, new byte[32], new byte[]{0, 0x18, -1, -1},
+                avcC);
+        byte[] elst = version == 1
+                ? fullBox("elst", 1, 0, ints(1), longs(DURATION_MILLIS, VIDEO_EDIT_MEDIA_TIME), ints(0x00010000))
+                : fullBox("elst", 0, 0, ints(1, DURATION_MILLIS, VIDEO_EDIT_MEDIA_TIME, 0x00010000));
+        byte[] stbl = box("stbl",
+                fullBox("stsd", 0, 0, ints(1), avc1),
+                fullBox("stts", 0, 0, ints(1, VIDEO_SAMPLES, VIDEO_DELTA)),
+                fullBox("ctts", 0, 0, ints(VIDEO_SAMPLES), ints(ctts)),
+                fullBox("stss", 0, 0, ints(sync.length), ints(sync)),
+                fullBox("stsc", 0, 0, ints(1, 1, VIDEO_CHUNKS[0], 1)),
+                fullBox("stsz", 0, 0, ints(0, VIDEO_SAMPLES), ints(sizes)),
+                stco(chunkOffsets));
+        return box("trak",
+                tkhd(version, VIDEO_TRACK_ID, WIDTH, HEIGHT),
+                box("edts", elst),
+                box("mdia",
+                        mdhd(version, VIDEO_TIMESCALE, VIDEO_SAMPLES * VIDEO_DELTA),
+                        hdlr("vide"),
+                        box("minf", fullBox("vmhd", 0, 1, new byte[8]), dinf(), stbl)));
+    }
+
+    private static byte[] audioTrak(int version, long[] chunkOffsets) {
+        byte[] mp4a = box("mp4a", new byte[6], new byte[]{0, 1}, new byte[8], new byte[]{0, 2, 0, 16},
+                new byte[4], ints(AUDIO_TIMESCALE << 16));
+        byte[] stbl = box("stbl",
+                fullBox("stsd", 0, 0, ints(1), mp4a),
+                fullBox("stts", 0, 0, ints(1, AUDIO_SAMPLES, AUDIO_DELTA)),
+                fullBox("stsc", 0, 0, ints(2, 1, AUDIO_CHUNKS[0], 1, 3, AUDIO_CHUNKS[2], 1)),
+                fullBox("stsz", 0, 0, ints(AUDIO_SAMPLE_SIZE, AUDIO_SAMPLES)),
+                fullBox("co64", 0, 0, ints(chunkOffsets.length), longs(chunkOffsets)));
+        return box("trak",
+                tkhd(version, AUDIO_TRACK_ID, 0, 0),
+                box("mdia",
+                        mdhd(version, AUDIO_TIMESCALE, AUDIO_SAMPLES * AUDIO_DELTA),
+                        hdlr("soun"),
+                        box("minf", fullBox("smhd", 0, 0, new byte[4]), dinf(), stbl)));
+    }
+
+    private static byte[] tkhd(int version, int trackId, int width, int height) {
+        byte[] idAndDuration = version == 1
+                ? concat(ints(trackId, 0), longs(DURATION_MILLIS))
+                : ints(trackId, 0, DURATION_MILLIS);
+        return fullBox("tkhd", version, 3,
+                version == 1 ? new byte[16] : new byte[8], idAndDuration,
+                new byte[8], new byte[8], matrix(), ints(width << 16, height << 16));
+    }
+
+    private static byte[] mdhd(int version, int timescale, long duration) {
+        return fullBox("mdhd", version, 0, times(version, timescale, duration), new byte[]{0x55, (byte) 0xc4, 0, 0});
+    }
+
+    private static byte[] hdlr(String handler) {
+        return fullBox("hdlr", 0, 0, ints(0), ascii(handler), new byte[12], ascii("sample\0"));
+    }
+
+    private static byte[] dinf() {
+        return box("dinf", fullBox("dref", 0, 0, ints(1), fullBox("url ", 0, 1)));
+    }
+
+    private static byte[] stco(long[] offsets) {
+        int[] values = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            values[i] = (int) offsets[i];
+        }
+        return fullBox("stco", 0, 0, ints(values.length), ints(values));
+    }
+
+    /**
+     * creation and modification times, timescale and duration in the version's widths.
+     */
+    private static byte[] times(int version, int timescale, long duration) {
+        return version == 1
+                ? concat(longs(0, 0), ints(timescale), longs(duration))
+                : ints(0, 0, timescale, (int) duration);
+    }
+
+    private static byte[] matrix() {
+        return ints(0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000);
+    }
+
+    // --- box helpers ------------------------------------------------------------
+
+    public static byte[] box(String type, byte[]... payloads) {
+        byte[] payload = concat(payloads);
+        return ByteBuffer.allocate(8 + payload.length)
+                .putInt(8 + payload.length)
+                .put(ascii(type))
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * A box with a 64-bit size (size field 1, then the largesize).
+     */
+    public static byte[] largeBox(String type, byte[]... payloads) {
+        byte[] payload = concat(payloads);
+        return ByteBuffer.allocate(16 + payload.length)
+                .putInt(1)
+                .put(ascii(type))
+                .putLong(16 + payload.length)
+                .put(payload)
+                .array();
+    }
+
+    public static byte[] fullBox(String type, int version, int flags, byte[]... payloads) {
+        return box(type, ints((version << 24) | flags), concat(payloads));
+    }
+
+    public static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    public static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    public static byte[] longs(long... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8);
+        for (long value : values) {
+            buffer.putLong(value);
+        }
+        return buffer.array();
+    }
+
+    public static PositionedReader reader(byte[] file) {
+        return (dst, position) -> {
+            int length = Math.min(dst.remaining(), file.length - (int) position);
+            if (length <= 0) {
+                return -1;
+            }
+            dst.put(file, (int) position, length);
+            return length;
+        };
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
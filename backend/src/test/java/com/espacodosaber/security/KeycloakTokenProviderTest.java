@@ -0,0 +1,185 @@
+package com.espacodosaber.security;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Local verification against a stub JWKS endpoint served in-process.
+ */
+class KeycloakTokenProviderTest {
+
+    private static final String ISSUER = "http://keycloak.test/realms/espacodosaber";
+
+    private HttpServer jwksServer;
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+    private RSAKey signingKey;
+    private volatile byte[] jwks;
+    private KeycloakTokenProvider provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        serve(signingKey);
+
+        jwksServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        jwksServer.createContext("/certs", exchange -> {
+            jwksRequests.incrementAndGet();
+            byte[] jwks = this.jwks;
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, jwks.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(jwks);
+            }
+        });
+        jwksServer.start();
+
+        provider = new KeycloakTokenProvider();
+        ReflectionTestUtils.setField(provider, "tokenValidation", "local");
+        ReflectionTestUtils.setField(provider, "jwksUri",
+                "http://127.0.0.1:" + jwksServer.getAddress().getPort() + "/certs");
+        ReflectionTestUtils.setField(provider, "issuerUri", ISSUER);
+        ReflectionTestUtils.setField(provider, "jwksCacheTtlMs", 300_000L);
+        ReflectionTestUtils.setField(provider, "jwksRefreshTimeoutMs", 15_000L);
+        provider.initJwtDecoder();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwksServer.stop(0);
+    }
+
+    @Test
+    void verifiesSignedTokenAndResolvesUsername() throws Exception {
+        Instant exp = Instant.now().plusSeconds(300);
+        String token = sign(signingKey, claims("aluno", ISSUER, exp));
+
+        VerifiedToken verified = provider.verifyToken(token);
+
+        assertThat(verified.username()).isEqualTo("aluno");
+        assertThat(verified.claims()).containsEntry("sub", "user-aluno");
+        assertThat(verified.expiresAt().getEpochSecond()).isEqualTo(exp.getEpochSecond());
+    }
+
+    @Test
+    void fetchesJwksOnceForRepeatedVerifications() throws Exception {
+        String token = sign(signingKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300)));
+
+        for (int i = 0; i < 5; i++) {
+            provider.verifyToken(token);
+        }
+
+        assertThat(jwksRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherKeyUnderAKnownKid() throws Exception {
+        RSAKey forgedKey = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        String token = sign(forgedKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300)));
+
+        assertThatThrownBy(() -> provider.verifyToken(token)).isInstanceOf(RuntimeException.class);
+        assertThat(provider.validateKeycloakToken(token)).isFalse();
+    }
+
+    @Test
+    void acceptsRotatedKeyAfterOneRefetch() throws Exception {
+        provider.verifyToken(sign(signingKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300))));
+        assertThat(jwksRequests.get()).isEqualTo(1);
+
+        // the realm rotates: the new key signs, the old one is still published
+        RSAKey rotatedKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+        serve(signingKey, rotatedKey);
+        String token = sign(rotatedKey, claims("professor", ISSUER, Instant.now().plusSeconds(300)));
+
+        assertThat(provider.verifyToken(token).username()).isEqualTo("professor");
+        assertThat(jwksRequests.get()).isEqualTo(2);
+
+        provider.verifyToken(token);
+        provider.verifyToken(sign(signingKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300))));
+        assertThat(jwksRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void unknownKidsDoNotCauseARefetchStorm() throws Exception {
+        provider.verifyToken(sign(signingKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300))));
+
+        RSAKey unpublishedKey = new RSAKeyGenerator(2048).generate();
+        for (int i = 0; i < 20; i++) {
+            RSAKey unknownKey = new RSAKey.Builder(unpublishedKey).keyID("unknown-" + i).build();
+            String token = sign(unknownKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300)));
+            assertThat(provider.validateKeycloakToken(token)).isFalse();
+        }
+
+        // one refetch for the first unknown kid, the rest are rate limited
+        assertThat(jwksRequests.get()).isEqualTo(2);
+        // known keys keep verifying from the cache meanwhile
+        provider.verifyToken(sign(signingKey, claims("aluno", ISSUER, Instant.now().plusSeconds(300))));
+        assertThat(jwksRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsExpiredToken() throws Exception {
+        String token = sign(signingKey, claims("aluno", ISSUER, Instant.now().minusSeconds(3600)));
+
+        assertThat(provider.validateKeycloakToken(token)).isFalse();
+    }
+
+    @Test
+    void rejectsTokenFromAnotherIssuer() throws Exception {
+        String token = sign(signingKey, claims("aluno", "http://evil.test/realms/x", Instant.now().plusSeconds(300)));
+
+        assertThat(provider.validateKeycloakToken(token)).isFalse();
+    }
+
+    // --- helpers ---
+
+    private void serve(RSAKey... keys) {
+        List<JWK> published = new ArrayList<>();
+        for (RSAKey key : keys) {
+            published.add(key.toPublicJWK());
+        }
+        jwks = new JWKSet(published).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JWTClaimsSet claims(String username, String issuer, Instant exp) {
+        return new JWTClaimsSet.Builder()
+                .subject("user-" + username)
+                .issuer(issuer)
+                .claim("preferred_username", username)
+                .issueTime(Date.from(Instant.now().minusSeconds(5)))
+                .expirationTime(Date.from(exp))
+                .build();
+    }
+
+    private static String sign(RSAKey key, JWTClaimsSet claims) throws Exception {
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+                claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
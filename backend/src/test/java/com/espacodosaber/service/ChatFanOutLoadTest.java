@@ -0,0 +1,256 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.dto.ChatMessageView;
+import com.espacodosaber.model.ChatMessage;
+import com.espacodosaber.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chat fan-out under load: thousands of STOMP sessions on a real simple
+ * broker and user destination handler, with the outbound channel counting
+ * the MESSAGE frames each session receives. Frames per message must follow
+ * the room (or conversation) size, not the number of connections.
+ */
+class ChatFanOutLoadTest {
+
+    private static final long VIDEO_ID = 7L;
+
+    private final Map<String, Set<SimpSession>> userSessions = new ConcurrentHashMap<>();
+    private final Map<String, String> sessionUsers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> frames = new ConcurrentHashMap<>();
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final AtomicLong subscriptionIds = new AtomicLong();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private ExecutorSubscribableChannel clientInbound;
+    private SimpleBrokerMessageHandler broker;
+    private UserDestinationMessageHandler userDestinations;
+    private ChatSubscriptionRegistry subscriptionRegistry;
+    private ChatMessageRouter router;
+
+    @BeforeEach
+    void setUp() {
+        // no executors: every send is delivered on the calling thread
+        clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                frames.computeIfAbsent(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+                        id -> new AtomicInteger()).incrementAndGet();
+            }
+        });
+
+        SimpUserRegistry userRegistry = mock(SimpUserRegistry.class);
+        when(userRegistry.getUser(anyString())).thenAnswer(inv -> simpUser(inv.getArgument(0)));
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic", "/queue"));
+        broker.start();
+        userDestinations = new UserDestinationMessageHandler(
+                clientInbound, brokerChannel, new DefaultUserDestinationResolver(userRegistry));
+        userDestinations.start();
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        subscriptionRegistry = new ChatSubscriptionRegistry();
+        router = new ChatMessageRouter();
+        ReflectionTestUtils.setField(router, "messagingTemplate", template);
+        ReflectionTestUtils.setField(router, "subscriptionRegistry", subscriptionRegistry);
+        ReflectionTestUtils.setField(router, "userRegistry", userRegistry);
+        ReflectionTestUtils.setField(router, "brokerMode", "simple");
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDestinations.stop();
+        broker.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 1_000, 5_000})
+    void roomMessagesReachOnlyTheRoomWhateverTheNumberOfConnections(int connections) {
+        int roomSize = 25;
+        for (int i = 0; i < connections; i++) {
+            String session = connect("user" + i);
+            subscribe(session, ChatMessageRouter.LOBBY_TOPIC);
+            if (i < roomSize) {
+                subscribe(session, ChatSubscriptionRegistry.videoRoom(VIDEO_ID));
+            }
+        }
+
+        int messages = 100;
+        for (int i = 0; i < messages; i++) {
+            route(videoMessage(user(1, "user1"), VIDEO_ID));
+        }
+
+        assertThat(totalFrames()).isEqualTo((long) messages * roomSize);
+        assertThat(frames).hasSize(roomSize);
+        assertThat(frames.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(messages));
+    }
+
+    @Test
+    void framesPerMessageFollowRoomSize() {
+        int connections = 2_000;
+        int[] roomSizes = {1, 10, 100, 1_000};
+        for (int i = 0; i < connections; i++) {
+            String session = connect("user" + i);
+            for (int room = 0; room < roomSizes.length; room++) {
+                if (i < roomSizes[room]) {
+                    subscribe(session, ChatSubscriptionRegistry.videoRoom((long) room));
+                }
+            }
+        }
+
+        for (int room = 0; room < roomSizes.length; room++) {
+            frames.clear();
+            route(videoMessage(user(1, "user1"), (long) room));
+            assertThat(totalFrames()).isEqualTo(roomSizes[room]);
+        }
+    }
+
+    @Test
+    void directMessagesReachOnlyBothParticipantsSessions() {
+        for (int i = 0; i < 2_000; i++) {
+            String session = connect("user" + i);
+            subscribe(session, "/user" + ChatMessageRouter.USER_QUEUE);
+            subscribe(session, ChatMessageRouter.LOBBY_TOPIC);
+        }
+        // a second tab for the receiver
+        String receiverTab = connect("user42");
+        subscribe(receiverTab, "/user" + ChatMessageRouter.USER_QUEUE);
+
+        int messages = 50;
+        for (int i = 0; i < messages; i++) {
+            ChatMessage message = videoMessage(user(1, "user1"), null);
+            message.setReceiver(user(42, "user42"));
+            route(message);
+        }
+
+        Set<String> expected = new HashSet<>();
+        userSessions.get("user1").forEach(session -> expected.add(session.getId()));
+        userSessions.get("user42").forEach(session -> expected.add(session.getId()));
+        assertThat(frames.keySet()).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(totalFrames()).isEqualTo((long) messages * 3);
+    }
+
+    @Test
+    void emptyRoomIsNotPublished() {
+        for (int i = 0; i < 1_000; i++) {
+            subscribe(connect("user" + i), ChatMessageRouter.LOBBY_TOPIC);
+        }
+
+        route(videoMessage(user(1, "user1"), VIDEO_ID));
+
+        assertThat(totalFrames()).isZero();
+    }
+
+    // --- STOMP sessions -------------------------------------------------------
+
+    private String connect(String username) {
+        String sessionId = "s" + sessionIds.incrementAndGet();
+        SimpMessageHeaderAccessor connect = headers(SimpMessageType.CONNECT, sessionId, username);
+        connect.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, new long[]{0, 0});
+        clientInbound.send(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+        SimpSession session = mock(SimpSession.class);
+        when(session.getId()).thenReturn(sessionId);
+        userSessions.computeIfAbsent(username, name -> ConcurrentHashMap.newKeySet()).add(session);
+        sessionUsers.put(sessionId, username);
+        return sessionId;
+    }
+
+    private void subscribe(String sessionId, String destination) {
+        SimpMessageHeaderAccessor subscribe = headers(SimpMessageType.SUBSCRIBE, sessionId, sessionUsers.get(sessionId));
+        subscribe.setSubscriptionId("sub-" + subscriptionIds.incrementAndGet());
+        subscribe.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders());
+        clientInbound.send(message);
+        // what the SessionSubscribeEvent publisher does in the application
+        subscriptionRegistry.onSubscribe(new SessionSubscribeEvent(this, message));
+    }
+
+    private static SimpMessageHeaderAccessor headers(SimpMessageType type, String sessionId, String username) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        Principal principal = () -> username;
+        accessor.setUser(principal);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+
+    private SimpUser simpUser(String username) {
+        Set<SimpSession> sessions = userSessions.get(username);
+        if (sessions == null) {
+            return null;
+        }
+        SimpUser user = mock(SimpUser.class);
+        when(user.getName()).thenReturn(username);
+        when(user.hasSessions()).thenReturn(true);
+        when(user.getSessions()).thenReturn(sessions);
+        return user;
+    }
+
+    // --- messages -------------------------------------------------------------
+
+    private void route(ChatMessage message) {
+        User receiver = message.getReceiver();
+        router.route(message, new ChatMessageView(message.getId(), message.getSender().getId(),
+                message.getSender().getUsername(), receiver != null ? receiver.getId() : null,
+                receiver != null ? receiver.getUsername() : null, message.getMessage(), message.getVideoId(),
+                System.currentTimeMillis(), false));
+    }
+
+    private ChatMessage videoMessage(User sender, Long videoId) {
+        ChatMessage message = new ChatMessage();
+        message.setId(messageIds.incrementAndGet());
+        message.setSender(sender);
+        message.setMessage("Ola");
+        message.setVideoId(videoId);
+        return message;
+    }
+
+    private static User user(long id, String username) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+
+    private long totalFrames() {
+        return frames.values().stream().mapToLong(AtomicInteger::get).sum();
+    }
+}
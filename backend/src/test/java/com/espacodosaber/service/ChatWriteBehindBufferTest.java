@@ -0,0 +1,225 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.model.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Journal replay, flush, retry and acknowledgement against an in-memory H2
+ * database, with the journal in a temporary directory.
+ */
+class ChatWriteBehindBufferTest {
+
+    @TempDir
+    Path journalDir;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private ChatMessageRouter router;
+    private long nextId = 1000;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:chat-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE chat_messages (id BIGINT PRIMARY KEY, sender_id BIGINT NOT NULL, " +
+                "receiver_id BIGINT, message VARCHAR(2000) NOT NULL, sent_at TIMESTAMP NOT NULL, " +
+                "is_read BOOLEAN NOT NULL, video_id BIGINT, conversation_key VARCHAR(41))");
+        router = mock(ChatMessageRouter.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void replaysJournalAfterCrashExactlyOnce() throws Exception {
+        ChatWriteBehindBuffer crashed = newBuffer("fire-and-forget", 16);
+        ChatMessage first = message("primeira");
+        ChatMessage second = message("segunda");
+        ChatMessage third = message("terceira");
+        crashed.append(first);
+        crashed.append(second);
+        crashed.append(third);
+        // the first one reached the database before the crash, its segment did not get deleted
+        jdbcTemplate.update("INSERT INTO chat_messages VALUES (?, 1, 2, 'primeira', CURRENT_TIMESTAMP, true, NULL, '1:2')",
+                first.getId());
+        // crash: no flush, no shutdown hook
+        assertThat(rowCount()).isEqualTo(1);
+
+        ChatWriteBehindBuffer restarted = newBuffer("fire-and-forget", 16);
+
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM chat_messages ORDER BY id", Long.class))
+                .containsExactly(first.getId(), second.getId(), third.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT message FROM chat_messages WHERE id = ?", String.class,
+                third.getId())).isEqualTo("terceira");
+        // the row written before the crash is left as it was
+        assertThat(jdbcTemplate.queryForObject("SELECT is_read FROM chat_messages WHERE id = ?", Boolean.class,
+                first.getId())).isTrue();
+        assertThat(restarted.stats().replayed()).isEqualTo(3);
+        assertThat(restarted.stats().rejected()).isZero();
+        // only the fresh, empty segment of the new instance is left
+        assertThat(nonEmptySegments()).isEmpty();
+
+        restarted.flushOnShutdown();
+        ChatWriteBehindBuffer again = newBuffer("fire-and-forget", 16);
+        assertThat(again.stats().replayed()).isZero();
+        assertThat(rowCount()).isEqualTo(3);
+    }
+
+    @Test
+    void acknowledgesOnlyAfterFlushAndOnlyPersistedRows() throws Exception {
+        ChatWriteBehindBuffer buffer = newBuffer("ack-after-flush", 16);
+        ChatMessage valid = message("ola");
+        // longer than the column; ChatService rejects these, the buffer must not ack them either
+        ChatMessage tooLong = message("x".repeat(2001));
+
+        buffer.append(valid);
+        buffer.append(tooLong);
+        verifyNoInteractions(router);
+
+        buffer.flush();
+
+        verify(router, times(1)).acknowledge(valid);
+        verify(router, never()).acknowledge(tooLong);
+        assertThat(rowCount()).isEqualTo(1);
+        assertThat(buffer.stats().rejected()).isEqualTo(1);
+        assertThat(buffer.stats().written()).isEqualTo(1);
+    }
+
+    @Test
+    void failedFlushKeepsMessagesAndJournalUntilRetrySucceeds() throws Exception {
+        ChatWriteBehindBuffer buffer = newBuffer("ack-after-flush", 16);
+        buffer.append(message("um"));
+        buffer.append(message("dois"));
+
+        jdbcTemplate.execute("ALTER TABLE chat_messages RENAME TO chat_messages_offline");
+        buffer.flush();
+        // appended during the outage: stays in the ring while the failed batch is retried
+        buffer.append(message("tres"));
+        buffer.flush();
+
+        verify(router, never()).acknowledge(any());
+        assertThat(buffer.stats().pending()).isEqualTo(3);
+        assertThat(nonEmptySegments()).isNotEmpty();
+
+        jdbcTemplate.execute("ALTER TABLE chat_messages_offline RENAME TO chat_messages");
+        buffer.flush();
+        buffer.flush();
+
+        assertThat(rowCount()).isEqualTo(3);
+        verify(router, times(3)).acknowledge(any());
+        assertThat(buffer.stats().pending()).isZero();
+        assertThat(nonEmptySegments()).isEmpty();
+    }
+
+    @Test
+    void countsPendingMessagesPerReceiverUntilTheyAreWritten() throws Exception {
+        ChatWriteBehindBuffer buffer = newBuffer("fire-and-forget", 16);
+        buffer.append(message("um"));
+        buffer.append(message("dois"));
+        ChatMessage other = message("tres");
+        other.setReceiver(ChatWriteBehindBuffer.userRef(3L, "outro"));
+        buffer.append(other);
+
+        assertThat(buffer.pendingFor(2L)).isEqualTo(2);
+        assertThat(buffer.pendingFor(3L)).isEqualTo(1);
+
+        // still pending while the failed batch waits for a retry
+        jdbcTemplate.execute("ALTER TABLE chat_messages RENAME TO chat_messages_offline");
+        buffer.flush();
+        assertThat(buffer.pendingFor(2L)).isEqualTo(2);
+
+        jdbcTemplate.execute("ALTER TABLE chat_messages_offline RENAME TO chat_messages");
+        buffer.flush();
+        assertThat(buffer.pendingFor(2L)).isZero();
+        assertThat(buffer.pendingFor(3L)).isZero();
+    }
+
+    @Test
+    void fullBufferWritesSynchronously() throws Exception {
+        ChatWriteBehindBuffer buffer = newBuffer("ack-after-flush", 2);
+        buffer.append(message("um"));
+        buffer.append(message("dois"));
+        ChatMessage overflow = message("tres");
+
+        buffer.append(overflow);
+
+        assertThat(rowCount()).isEqualTo(1);
+        verify(router, times(1)).acknowledge(overflow);
+        assertThat(buffer.stats().overflowWrites()).isEqualTo(1);
+
+        buffer.flush();
+        assertThat(rowCount()).isEqualTo(3);
+    }
+
+    // --- helpers --------------------------------------------------------------
+
+    private ChatWriteBehindBuffer newBuffer(String durability, int capacity) throws Exception {
+        ChatWriteBehindBuffer buffer = new ChatWriteBehindBuffer();
+        ReflectionTestUtils.setField(buffer, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(buffer, "dataSource", dataSource);
+        ReflectionTestUtils.setField(buffer, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(buffer, "chatMessageRouter", router);
+        ReflectionTestUtils.setField(buffer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(buffer, "capacity", capacity);
+        ReflectionTestUtils.setField(buffer, "batchSize", 500);
+        ReflectionTestUtils.setField(buffer, "durabilityMode", durability);
+        ReflectionTestUtils.setField(buffer, "journalEnabled", true);
+        ReflectionTestUtils.setField(buffer, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(buffer, "journalFsync", false);
+        buffer.init();
+        return buffer;
+    }
+
+    private ChatMessage message(String text) {
+        ChatMessage message = new ChatMessage();
+        message.setId(nextId++);
+        message.setSender(ChatWriteBehindBuffer.userRef(1L, "aluno"));
+        message.setReceiver(ChatWriteBehindBuffer.userRef(2L, "professor"));
+        message.setMessage(text);
+        message.setSentAt(LocalDateTime.now());
+        message.setConversationKey(ChatMessage.conversationKey(1L, 2L));
+        return message;
+    }
+
+    private int rowCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages", Integer.class);
+    }
+
+    private List<Path> nonEmptySegments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(path -> {
+                try {
+                    return Files.size(path) > 0;
+                } catch (IOException e) {
+                    return false;
+                }
+            }).toList();
+        }
+    }
+}
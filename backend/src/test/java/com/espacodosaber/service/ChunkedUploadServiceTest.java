@@ -0,0 +1,295 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.dto.UploadSessionRequest;
+import com.espacodosaber.dto.UploadSessionResponse;
+import com.espacodosaber.dto.VideoResponse;
+import com.espacodosaber.model.UploadChunk;
+import com.espacodosaber.model.UploadSession;
+import com.espacodosaber.model.UploadStatus;
+import com.espacodosaber.repository.UploadChunkRepository;
+import com.espacodosaber.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chunk writes, resume and completion against a local session directory,
+ * with in-memory repositories standing in for the database.
+ */
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @TempDir
+    Path sessionDir;
+
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final Map<UploadChunk.Key, UploadChunk> chunks = new ConcurrentHashMap<>();
+    private final AtomicReference<byte[]> registered = new AtomicReference<>();
+    private final AtomicReference<String> registeredChecksum = new AtomicReference<>();
+
+    private UploadSessionRepository sessionRepository;
+    private UploadChunkRepository chunkRepository;
+    private VideoService videoService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sessionRepository = mock(UploadSessionRepository.class);
+        when(sessionRepository.save(any(UploadSession.class))).thenAnswer(inv -> {
+            UploadSession session = inv.getArgument(0);
+            sessions.put(session.getId(), session);
+            return session;
+        });
+        when(sessionRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(sessions.get(inv.<String>getArgument(0))));
+        when(sessionRepository.transition(anyString(), any(), any())).thenAnswer(inv -> {
+            UploadSession session = sessions.get(inv.<String>getArgument(0));
+            synchronized (sessions) {
+                if (session == null || session.getStatus() != inv.getArgument(1)) {
+                    return 0;
+                }
+                session.setStatus(inv.getArgument(2));
+                return 1;
+            }
+        });
+        when(sessionRepository.findIdle(any(), any(), any(Pageable.class))).thenAnswer(inv -> {
+            LocalDateTime cutoff = inv.getArgument(1);
+            return sessions.values().stream()
+                    .filter(s -> s.getStatus() == inv.getArgument(0) && s.getCreatedAt().isBefore(cutoff))
+                    .filter(s -> chunks.values().stream().noneMatch(c ->
+                            c.getId().getSessionId().equals(s.getId()) && !c.getReceivedAt().isBefore(cutoff)))
+                    .toList();
+        });
+
+        chunkRepository = mock(UploadChunkRepository.class);
+        when(chunkRepository.save(any(UploadChunk.class))).thenAnswer(inv -> {
+            UploadChunk chunk = inv.getArgument(0);
+            chunks.put(chunk.getId(), chunk);
+            return chunk;
+        });
+        when(chunkRepository.findChunkIndexes(anyString())).thenAnswer(inv -> chunks.keySet().stream()
+                .filter(k -> k.getSessionId().equals(inv.getArgument(0)))
+                .map(UploadChunk.Key::getChunkIndex)
+                .toList());
+        when(chunkRepository.countBySessionId(anyString())).thenAnswer(inv -> chunks.keySet().stream()
+                .filter(k -> k.getSessionId().equals(inv.getArgument(0)))
+                .count());
+        doAnswer(inv -> {
+            chunks.keySet().removeIf(k -> k.getSessionId().equals(inv.getArgument(0)));
+            return null;
+        }).when(chunkRepository).deleteBySessionId(anyString());
+
+        videoService = mock(VideoService.class);
+        when(videoService.registerUploadedFile(anyString(), any(), any(Path.class), any(), any(), any()))
+                .thenAnswer(this::register);
+    }
+
+    // Stands in for VideoService: keeps what was registered and consumes the file like storage does
+    private VideoResponse register(InvocationOnMock inv) throws Exception {
+        Path source = inv.getArgument(2);
+        registered.set(Files.readAllBytes(source));
+        registeredChecksum.set(inv.getArgument(4));
+        Files.delete(source);
+        return new VideoResponse(42L, "Aula", null, null, 1L, "Teacher", 0L,
+                false, false, LocalDateTime.now(), null, null, null, null, null);
+    }
+
+    private ChunkedUploadService newService() {
+        ChunkedUploadService service = new ChunkedUploadService();
+        ReflectionTestUtils.setField(service, "uploadSessionRepository", sessionRepository);
+        ReflectionTestUtils.setField(service, "uploadChunkRepository", chunkRepository);
+        ReflectionTestUtils.setField(service, "videoService", videoService);
+        ReflectionTestUtils.setField(service, "sessionDir", sessionDir.toString());
+        ReflectionTestUtils.setField(service, "defaultChunkSize", CHUNK_SIZE);
+        ReflectionTestUtils.setField(service, "maxChunkSize", 1 << 20);
+        ReflectionTestUtils.setField(service, "maxFileSize", 1L << 30);
+        ReflectionTestUtils.setField(service, "bufferSize", 300);
+        ReflectionTestUtils.setField(service, "sessionTtlHours", 24L);
+        return service;
+    }
+
+    private static UploadSessionRequest request(long size) {
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setTitle("Aula");
+        request.setFilename("aula.mp4");
+        request.setTotalSize(size);
+        return request;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+
+    private static ByteArrayInputStream chunk(byte[] data, int index) {
+        int from = index * CHUNK_SIZE;
+        return new ByteArrayInputStream(Arrays.copyOfRange(data, from, Math.min(from + CHUNK_SIZE, data.length)));
+    }
+
+    @Test
+    void resumesAfterRestartAndAssemblesChunksWrittenOutOfOrder() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2 + 500);
+        ChunkedUploadService service = newService();
+        UploadSessionResponse created = service.createSession(request(data.length), "teacher");
+        String id = created.getSessionId();
+        assertThat(created.getTotalChunks()).isEqualTo(3);
+
+        service.writeChunk(id, 2, chunk(data, 2), "teacher");
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+        assertThat(service.getStatus(id, "teacher").getMissingChunks()).containsExactly(1);
+
+        // A new instance sees the same state: rows plus the partial file on disk
+        ChunkedUploadService restarted = newService();
+        assertThat(restarted.getStatus(id, "teacher").getMissingChunks()).containsExactly(1);
+        restarted.writeChunk(id, 1, chunk(data, 1), "teacher");
+
+        VideoResponse video = restarted.complete(id, "teacher");
+
+        assertThat(video.getId()).isEqualTo(42L);
+        assertThat(registered.get()).isEqualTo(data);
+        assertThat(registeredChecksum.get())
+                .isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)));
+        assertThat(sessions.get(id).getStatus()).isEqualTo(UploadStatus.COMPLETED);
+        assertThat(sessions.get(id).getVideoId()).isEqualTo(42L);
+        assertThat(chunks).isEmpty();
+    }
+
+    @Test
+    void resendingAChunkOverwritesTheSameBytes() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2);
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(data.length), "teacher").getSessionId();
+
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+        service.writeChunk(id, 1, chunk(data, 1), "teacher");
+        service.complete(id, "teacher");
+
+        assertThat(registered.get()).isEqualTo(data);
+    }
+
+    @Test
+    void rejectsChunkWithWrongSizeWithoutRecordingIt() throws Exception {
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(CHUNK_SIZE * 2), "teacher").getSessionId();
+
+        assertThatThrownBy(() -> service.writeChunk(id, 0, new ByteArrayInputStream(new byte[100]), "teacher"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.writeChunk(id, 1, new ByteArrayInputStream(new byte[CHUNK_SIZE + 1]), "teacher"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.getStatus(id, "teacher").getMissingChunks()).containsExactly(0, 1);
+    }
+
+    @Test
+    void completeRequiresEveryChunkAndSucceedsOnlyOnce() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2);
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(data.length), "teacher").getSessionId();
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+
+        assertThatThrownBy(() -> service.complete(id, "teacher")).isInstanceOf(IllegalStateException.class);
+
+        service.writeChunk(id, 1, chunk(data, 1), "teacher");
+        service.complete(id, "teacher");
+        assertThatThrownBy(() -> service.complete(id, "teacher")).isInstanceOf(IllegalStateException.class);
+        verify(videoService, times(1)).registerUploadedFile(eq("teacher"), any(), any(Path.class), any(), any(), any());
+    }
+
+    @Test
+    void completeLosesTheRaceWhenAnotherCallAlreadyTransitioned() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE);
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(data.length), "teacher").getSessionId();
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+
+        // Another node completed between our read of the session and the transition
+        doReturn(0).when(sessionRepository).transition(eq(id), eq(UploadStatus.OPEN), eq(UploadStatus.COMPLETED));
+
+        assertThatThrownBy(() -> service.complete(id, "teacher")).isInstanceOf(IllegalStateException.class);
+        verify(videoService, times(0)).registerUploadedFile(anyString(), any(), any(Path.class), any(), any(), any());
+    }
+
+    @Test
+    void failedStorageReopensTheSessionForARetry() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2);
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(data.length), "teacher").getSessionId();
+        service.writeChunk(id, 0, chunk(data, 0), "teacher");
+        service.writeChunk(id, 1, chunk(data, 1), "teacher");
+
+        doThrow(new IOException("storage unavailable"))
+                .when(videoService).registerUploadedFile(anyString(), any(), any(Path.class), any(), any(), any());
+
+        assertThatThrownBy(() -> service.complete(id, "teacher")).isInstanceOf(IOException.class);
+        assertThat(sessions.get(id).getStatus()).isEqualTo(UploadStatus.OPEN);
+        assertThat(sessions.get(id).getVideoId()).isNull();
+        assertThat(service.getStatus(id, "teacher").getMissingChunks()).isEmpty();
+        assertThat(Paths.get(sessions.get(id).getFilePath())).exists();
+
+        doAnswer(this::register)
+                .when(videoService).registerUploadedFile(anyString(), any(), any(Path.class), any(), any(), any());
+
+        assertThat(service.complete(id, "teacher").getId()).isEqualTo(42L);
+        assertThat(registered.get()).isEqualTo(data);
+        assertThat(sessions.get(id).getStatus()).isEqualTo(UploadStatus.COMPLETED);
+    }
+
+    @Test
+    void expiresIdleSessionsAndDeletesTheirFiles() throws Exception {
+        ChunkedUploadService service = newService();
+        String idle = service.createSession(request(CHUNK_SIZE * 4), "teacher").getSessionId();
+        String active = service.createSession(request(CHUNK_SIZE * 4), "teacher").getSessionId();
+        sessions.get(idle).setCreatedAt(LocalDateTime.now().minusDays(2));
+        sessions.get(active).setCreatedAt(LocalDateTime.now().minusDays(2));
+        service.writeChunk(active, 0, new ByteArrayInputStream(new byte[CHUNK_SIZE]), "teacher");
+
+        service.expireIdleSessions();
+
+        assertThat(sessions.get(idle).getStatus()).isEqualTo(UploadStatus.EXPIRED);
+        assertThat(Files.exists(Paths.get(sessions.get(idle).getFilePath()))).isFalse();
+        assertThat(sessions.get(active).getStatus()).isEqualTo(UploadStatus.OPEN);
+        assertThat(Files.exists(Paths.get(sessions.get(active).getFilePath()))).isTrue();
+        assertThatThrownBy(() -> service.writeChunk(idle, 0, new ByteArrayInputStream(new byte[CHUNK_SIZE]), "teacher"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void sessionsOfOtherUsersAreNotVisible() throws Exception {
+        ChunkedUploadService service = newService();
+        String id = service.createSession(request(CHUNK_SIZE), "teacher").getSessionId();
+
+        assertThatThrownBy(() -> service.getStatus(id, "someone-else")).isInstanceOf(RuntimeException.class);
+    }
+}
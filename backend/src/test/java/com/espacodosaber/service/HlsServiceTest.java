@@ -0,0 +1,86 @@
+package com.espacodosaber.service;
+
+import com.espacodosaber.media.HlsPlan;
+import com.espacodosaber.media.Mp4Samples;
+import com.espacodosaber.model.Video;
+import com.espacodosaber.storage.VideoStorage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Playlists and media segments for the generated lecture in Mp4Samples,
+ * served from a local file.
+ */
+class HlsServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final VideoStorage videoStorage = mock(VideoStorage.class);
+    private HlsService hlsService;
+    private Video video;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = Files.write(dir.resolve("lecture.mp4"), Mp4Samples.lecture(1, true));
+        when(videoStorage.localPath("videos/lecture.mp4")).thenReturn(Optional.of(file));
+
+        hlsService = new HlsService();
+        ReflectionTestUtils.setField(hlsService, "videoStorage", videoStorage);
+        ReflectionTestUtils.setField(hlsService, "segmentSeconds", 0.3);
+        ReflectionTestUtils.setField(hlsService, "planCacheSize", 10L);
+        ReflectionTestUtils.setField(hlsService, "bufferSize", 64);
+        hlsService.init();
+
+        video = new Video();
+        video.setId(7L);
+        video.setFilePath("videos/lecture.mp4");
+        video.setFileSize(Files.size(file));
+        video.setChecksum("0123456789abcdef0123456789abcdef");
+    }
+
+    @Test
+    void segmentSizeMatchesTheBytesWritten() throws Exception {
+        HlsPlan plan = hlsService.plan(video);
+
+        assertThat(plan.segments).hasSize(2);
+        for (HlsPlan.Segment segment : plan.segments) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            hlsService.writeSegment(video, plan, segment, out);
+            assertThat(out.size()).as("segment " + segment.index())
+                    .isEqualTo(hlsService.segmentSize(plan, segment));
+        }
+    }
+
+    @Test
+    void plansAreCachedPerVersion() {
+        HlsPlan plan = hlsService.plan(video);
+        assertThat(hlsService.plan(video)).isSameAs(plan);
+
+        video.setChecksum("fedcba9876543210fedcba9876543210");
+        assertThat(hlsService.plan(video)).isNotSameAs(plan);
+    }
+
+    @Test
+    void mediaPlaylistListsEverySegment() {
+        String playlist = hlsService.mediaPlaylist(hlsService.plan(video));
+
+        assertThat(playlist)
+                .contains("#EXT-X-TARGETDURATION:1\n")
+                .contains("#EXT-X-MAP:URI=\"init.mp4\"\n")
+                .contains("#EXTINF:0.320,\nseg-0.m4s\n")
+                .contains("#EXTINF:0.160,\nseg-1.m4s\n")
+                .endsWith("#EXT-X-ENDLIST\n");
+    }
+}
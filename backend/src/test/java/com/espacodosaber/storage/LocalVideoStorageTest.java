@@ -0,0 +1,77 @@
+package com.espacodosaber.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LocalVideoStorageTest {
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path staging;
+
+    private LocalVideoStorage storage() {
+        return new LocalVideoStorage(root.toString() + "/");
+    }
+
+    @Test
+    void putFileMovesStagedFileIntoPlace() throws IOException {
+        Path source = Files.write(staging.resolve("a.mp4"), new byte[]{1, 2, 3, 4, 5});
+
+        storage().putFile("videos/a.mp4", source, "video/mp4");
+
+        assertThat(Files.readAllBytes(root.resolve("videos/a.mp4"))).containsExactly(1, 2, 3, 4, 5);
+        assertThat(source).doesNotExist();
+    }
+
+    @Test
+    void putFileFallsBackToCopyAcrossFilesystems() throws IOException {
+        Path shm = Paths.get("/dev/shm");
+        assumeTrue(Files.isDirectory(shm) && Files.isWritable(shm)
+                && !Files.getFileStore(shm).equals(Files.getFileStore(root)));
+        Path source = Files.createTempFile(shm, "staged-", ".mp4");
+        try {
+            Files.write(source, new byte[]{9, 8, 7});
+
+            storage().putFile("videos/b.mp4", source, "video/mp4");
+
+            assertThat(Files.readAllBytes(root.resolve("videos/b.mp4"))).containsExactly(9, 8, 7);
+            assertThat(root.resolve("videos/b.mp4.part")).doesNotExist();
+            assertThat(source).doesNotExist();
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Test
+    void rejectedKeyLeavesSourceInPlace() throws IOException {
+        Path source = Files.write(staging.resolve("c.mp4"), new byte[]{1});
+
+        assertThatThrownBy(() -> storage().putFile("../outside.mp4", source, "video/mp4"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(source).exists();
+    }
+
+    @Test
+    void getRangeReadsOnlyTheRequestedBytes() throws IOException {
+        LocalVideoStorage storage = storage();
+        Path source = Files.write(staging.resolve("d.mp4"), new byte[]{0, 1, 2, 3, 4, 5, 6, 7});
+        storage.putFile("videos/d.mp4", source, "video/mp4");
+
+        try (InputStream in = storage.getRange("videos/d.mp4", 2, 3)) {
+            assertThat(in.readAllBytes()).containsExactly(2, 3, 4);
+        }
+        assertThat(storage.stat("videos/d.mp4")).hasValueSatisfying(object -> assertThat(object.size()).isEqualTo(8));
+    }
+}
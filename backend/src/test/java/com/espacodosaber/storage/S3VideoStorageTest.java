@@ -0,0 +1,307 @@
+package com.espacodosaber.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Single and multipart uploads against an in-process stand-in for MinIO that
+ * implements the handful of S3 calls the storage uses.
+ */
+class S3VideoStorageTest {
+
+    private static final String BUCKET = "video-storage";
+
+    private static final int PART_SIZE = 1024;
+
+    @TempDir
+    Path staging;
+
+    private HttpServer server;
+    private S3VideoStorage storage;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger uploadIds = new AtomicInteger();
+    private final AtomicInteger partRequests = new AtomicInteger();
+    private final AtomicInteger aborts = new AtomicInteger();
+    private final AtomicBoolean failWrites = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        storage = new S3VideoStorage();
+        ReflectionTestUtils.setField(storage, "endpoint", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(storage, "region", "us-east-1");
+        ReflectionTestUtils.setField(storage, "bucket", BUCKET);
+        ReflectionTestUtils.setField(storage, "accessKey", "minioadmin");
+        ReflectionTestUtils.setField(storage, "secretKey", "minioadmin");
+        ReflectionTestUtils.setField(storage, "pathStyle", true);
+        ReflectionTestUtils.setField(storage, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(storage, "uploadParallelism", 2);
+        storage.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void smallFileIsStoredInOneRequestAndSourceDeleted() throws Exception {
+        byte[] data = randomBytes(500);
+        Path source = stage(data);
+
+        storage.putFile("videos/a.mp4", source, "video/mp4");
+
+        assertThat(objects.get("videos/a.mp4")).isEqualTo(data);
+        assertThat(partRequests).hasValue(0);
+        assertThat(source).doesNotExist();
+        try (InputStream in = storage.getRange("videos/a.mp4", 100, 50)) {
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(data, 100, 150));
+        }
+    }
+
+    @Test
+    void largeFileIsUploadedInPartsAndSourceDeleted() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 3 - 200);
+        Path source = stage(data);
+
+        storage.putFile("videos/b.mp4", source, "video/mp4");
+
+        assertThat(objects.get("videos/b.mp4")).isEqualTo(data);
+        assertThat(partRequests).hasValue(3);
+        assertThat(source).doesNotExist();
+    }
+
+    @Test
+    void failedSingleUploadKeepsSource() throws Exception {
+        byte[] data = randomBytes(500);
+        Path source = stage(data);
+        failWrites.set(true);
+
+        assertThatThrownBy(() -> storage.putFile("videos/c.mp4", source, "video/mp4"))
+                .isInstanceOf(S3Exception.class);
+
+        assertThat(objects).doesNotContainKey("videos/c.mp4");
+        assertThat(source).exists();
+        assertThat(Files.readAllBytes(source)).isEqualTo(data);
+    }
+
+    @Test
+    void failedMultipartUploadIsAbortedAndKeepsSource() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 2 + 1);
+        Path source = stage(data);
+        failWrites.set(true);
+
+        assertThatThrownBy(() -> storage.putFile("videos/d.mp4", source, "video/mp4"))
+                .isInstanceOf(IOException.class);
+
+        assertThat(objects).doesNotContainKey("videos/d.mp4");
+        assertThat(aborts).hasValue(1);
+        assertThat(source).exists();
+    }
+
+    @Test
+    void putStreamsUnknownLengthInParts() throws Exception {
+        byte[] data = randomBytes(PART_SIZE * 2 + 10);
+
+        storage.put("videos/e.mp4", new ByteArrayInputStream(data), -1, "video/mp4");
+
+        assertThat(objects.get("videos/e.mp4")).isEqualTo(data);
+        assertThat(partRequests).hasValue(3);
+    }
+
+    private Path stage(byte[] data) throws IOException {
+        Path file = Files.createTempFile(staging, "staged-", ".mp4");
+        Files.write(file, data);
+        return file;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    // --- S3 stand-in ---------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath().substring(1);
+            String query = exchange.getRequestURI().getRawQuery();
+            Map<String, String> params = params(query);
+            String key = path.startsWith(BUCKET + "/") ? path.substring(BUCKET.length() + 1) : "";
+            byte[] body = body(exchange);
+
+            if (key.isEmpty()) {
+                // HeadBucket / CreateBucket
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            if (failWrites.get() && method.equals("PUT")) {
+                xml(exchange, 500, "<Error><Code>InternalError</Code><Message>Write failed</Message></Error>");
+                return;
+            }
+
+            switch (method) {
+                case "PUT" -> {
+                    if (params.containsKey("uploadId")) {
+                        partRequests.incrementAndGet();
+                        uploads.get(params.get("uploadId")).put(Integer.parseInt(params.get("partNumber")), body);
+                    } else {
+                        objects.put(key, body);
+                    }
+                    exchange.getResponseHeaders().add("ETag", "\"" + md5(body) + "\"");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                case "POST" -> {
+                    if (params.containsKey("uploads")) {
+                        String uploadId = "upload-" + uploadIds.incrementAndGet();
+                        uploads.put(uploadId, new TreeMap<>());
+                        xml(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>"
+                                + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    } else {
+                        ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+                        Map<Integer, byte[]> parts = uploads.remove(params.get("uploadId"));
+                        for (byte[] part : parts.values()) {
+                            assembled.write(part);
+                        }
+                        objects.put(key, assembled.toByteArray());
+                        xml(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>"
+                                + key + "</Key><ETag>\"" + md5(assembled.toByteArray()) + "-" + parts.size()
+                                + "\"</ETag></CompleteMultipartUploadResult>");
+                    }
+                }
+                case "DELETE" -> {
+                    if (params.containsKey("uploadId")) {
+                        aborts.incrementAndGet();
+                        uploads.remove(params.get("uploadId"));
+                    } else {
+                        objects.remove(key);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                case "GET" -> {
+                    byte[] object = objects.get(key);
+                    if (object == null) {
+                        xml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>Not found</Message></Error>");
+                        return;
+                    }
+                    String range = exchange.getRequestHeaders().getFirst("Range");
+                    int from = 0;
+                    int to = object.length - 1;
+                    if (range != null) {
+                        String[] bounds = range.substring("bytes=".length()).split("-");
+                        from = Integer.parseInt(bounds[0]);
+                        to = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+                        exchange.getResponseHeaders().add("Content-Range",
+                                "bytes " + from + "-" + to + "/" + object.length);
+                    }
+                    byte[] slice = Arrays.copyOfRange(object, from, to + 1);
+                    exchange.sendResponseHeaders(range != null ? 206 : 200, slice.length);
+                    exchange.getResponseBody().write(slice);
+                }
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Request body, with aws-chunked (streaming SigV4) framing removed.
+     */
+    private static byte[] body(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (sha == null || !sha.startsWith("STREAMING-")) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < raw.length) {
+            int lineEnd = indexOfCrlf(raw, position);
+            String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            position = lineEnd + 2;
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, position, size);
+            position += size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] data, int from) {
+        for (int i = from; i < data.length - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return data.length;
+    }
+
+    private static Map<String, String> params(String query) {
+        Map<String, String> params = new TreeMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            params.put(eq < 0 ? pair : pair.substring(0, eq), eq < 0 ? "" : pair.substring(eq + 1));
+        }
+        return params;
+    }
+
+    private static void xml(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
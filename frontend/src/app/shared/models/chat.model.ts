@@ -1,15 +1,11 @@
 export interface ChatMessage {
-  id: number;
-  sender: {
-    id: number;
-    username: string;
-  };
-  receiver?: {
-    id: number;
-    username: string;
-  };
+  id: string; // 64-bit id, kept as a string
+  senderId: number;
+  senderName: string;
+  receiverId?: number;
+  receiverName?: string;
   message: string;
-  sentAt: Date;
-  isRead: boolean;
+  sentAt: number; // epoch millis
+  read: boolean;
   videoId?: number;
 }
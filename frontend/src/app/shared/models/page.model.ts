@@ -0,0 +1,5 @@
+// One page of a keyset-paginated list; nextCursor is absent on the last page
+export interface Page<T> {
+  items: T[];
+  nextCursor?: string;
+}
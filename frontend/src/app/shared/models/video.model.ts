@@ -9,6 +9,11 @@ export interface Video {
   isLive: boolean;
   isPublic: boolean;
   uploadedAt: Date;
+  width?: number;
+  height?: number;
+  videoCodec?: string;
+  audioCodec?: string;
+  bitrate?: number; // bits per second
 }
 
 export interface VideoRequest {
@@ -1,9 +1,11 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { Client } from '@stomp/stompjs';
+import { map } from 'rxjs/operators';
+import { Client, StompSubscription } from '@stomp/stompjs';
 import * as SockJS from 'sockjs-client';
 import { ChatMessage } from '../models/chat.model';
+import { Page } from '../models/page.model';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -56,23 +58,60 @@ export class ChatService {
     }
   }
 
-  subscribe(callback: (message: ChatMessage) => void): void {
-    if (this.stompClient) {
-      this.stompClient.subscribe('/topic/messages', (message) => {
-        callback(JSON.parse(message.body));
-      });
+  // Direct messages sent to or by the current user
+  subscribe(callback: (message: ChatMessage) => void): StompSubscription | null {
+    return this.subscribeTo('/user/queue/messages', callback);
+  }
+
+  // Chat room of a single video; unsubscribe when leaving the video page
+  subscribeToVideo(videoId: number, callback: (message: ChatMessage) => void): StompSubscription | null {
+    return this.subscribeTo(`/topic/video.${videoId}`, callback);
+  }
+
+  // Messages without receiver or video
+  subscribeToLobby(callback: (message: ChatMessage) => void): StompSubscription | null {
+    return this.subscribeTo('/topic/messages', callback);
+  }
+
+  private subscribeTo(destination: string, callback: (message: ChatMessage) => void): StompSubscription | null {
+    if (!this.stompClient) {
+      return null;
     }
+    return this.stompClient.subscribe(destination, (message) => {
+      callback(JSON.parse(message.body));
+    });
   }
 
-  getConversation(userId: number): Observable<ChatMessage[]> {
-    return this.http.get<ChatMessage[]>(`${this.apiUrl}/conversation/${userId}`);
+  // Newest first; pass nextCursor back as `before` for older messages
+  getConversation(userId: number, before?: string, limit = 50): Observable<Page<ChatMessage>> {
+    const params: Record<string, string> = { limit: String(limit) };
+    if (before) {
+      params['before'] = before;
+    }
+    return this.http.get<ChatMessage[]>(`${this.apiUrl}/conversation/${userId}`, { params, observe: 'response' }).pipe(
+      map(response => ({
+        items: response.body ?? [],
+        nextCursor: response.headers.get('X-Next-Cursor') ?? undefined
+      }))
+    );
   }
 
   getUnreadMessages(): Observable<ChatMessage[]> {
     return this.http.get<ChatMessage[]>(`${this.apiUrl}/unread`);
   }
 
-  markAsRead(messageId: number): Observable<void> {
+  markAsRead(messageId: string): Observable<void> {
     return this.http.put<void>(`${this.apiUrl}/${messageId}/read`, {});
   }
+
+  getUnreadCount(): Observable<{ count: number }> {
+    return this.http.get<{ count: number }>(`${this.apiUrl}/unread/count`);
+  }
+
+  // Marks everything received from userId up to and including upToMessageId
+  markConversationRead(userId: number, upToMessageId: string): Observable<{ updated: number }> {
+    return this.http.put<{ updated: number }>(`${this.apiUrl}/conversation/${userId}/read`, {}, {
+      params: { upTo: upToMessageId }
+    });
+  }
 }
@@ -1,7 +1,9 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { HttpClient, HttpParams } from '@angular/common/http';
+import { EMPTY, Observable } from 'rxjs';
+import { expand, map, reduce } from 'rxjs/operators';
 import { Video } from '../models/video.model';
+import { Page } from '../models/page.model';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -23,8 +25,29 @@ export class VideoService {
     return this.http.post<Video>(`${this.apiUrl}/upload`, formData);
   }
 
+  // One page of the public catalogue, newest first; pass nextCursor back as `after`
+  getPublicVideosPage(after?: string, limit?: number): Observable<Page<Video>> {
+    let params = new HttpParams();
+    if (after) {
+      params = params.set('after', after);
+    }
+    if (limit) {
+      params = params.set('limit', limit);
+    }
+    return this.http.get<Video[]>(`${this.apiUrl}/public`, { params, observe: 'response' }).pipe(
+      map(response => ({
+        items: response.body ?? [],
+        nextCursor: response.headers.get('X-Next-Cursor') ?? undefined
+      }))
+    );
+  }
+
+  // The whole public catalogue, following the cursor until the last page
   getPublicVideos(): Observable<Video[]> {
-    return this.http.get<Video[]>(`${this.apiUrl}/public`);
+    return this.getPublicVideosPage().pipe(
+      expand(page => page.nextCursor ? this.getPublicVideosPage(page.nextCursor) : EMPTY),
+      reduce((videos, page) => videos.concat(page.items), [] as Video[])
+    );
   }
 
   getMyVideos(): Observable<Video[]> {
@@ -38,4 +61,16 @@ export class VideoService {
   getStreamUrl(id: number): string {
     return `${this.apiUrl}/stream/${id}`;
   }
+
+  getThumbnailUrl(id: number): string {
+    return `${this.apiUrl}/${id}/thumbnail`;
+  }
+
+  // Poster fetched through HttpClient so private videos get the bearer token;
+  // the caller revokes the object URL when it is no longer shown
+  getThumbnail(id: number): Observable<string> {
+    return this.http.get(this.getThumbnailUrl(id), { responseType: 'blob' }).pipe(
+      map(blob => URL.createObjectURL(blob))
+    );
+  }
 }
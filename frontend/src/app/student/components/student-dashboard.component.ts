@@ -1,4 +1,4 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { VideoService } from '../../shared/services/video.service';
 import { Video } from '../../shared/models/video.model';
 
@@ -17,8 +17,8 @@ import { Video } from '../../shared/models/video.model';
           <div class="video-grid">
             <div class="video-card" *ngFor="let video of videos">
               <div class="video-thumbnail">
-                <img *ngIf="video.thumbnailPath" [src]="video.thumbnailPath" alt="{{ video.title }}" width="100%" height="200">
-                <div *ngIf="!video.thumbnailPath" class="placeholder-thumbnail"></div>
+                <img *ngIf="thumbnails[video.id]" [src]="thumbnails[video.id]" alt="{{ video.title }}" width="100%" height="200">
+                <div *ngIf="!thumbnails[video.id]" class="placeholder-thumbnail"></div>
               </div>
               <div class="video-info">
                 <h4>{{ video.title }}</h4>
@@ -28,6 +28,9 @@ import { Video } from '../../shared/models/video.model';
               </div>
             </div>
           </div>
+          <div *ngIf="nextCursor" class="load-more">
+            <button (click)="loadMore()" [disabled]="loading">Carregar mais</button>
+          </div>
         </div>
       </div>
     </div>
@@ -108,10 +111,18 @@ import { Video } from '../../shared/models/video.model';
       background: #f44336;
       color: white;
     }
+    .load-more {
+      text-align: center;
+      margin-top: 1.5rem;
+    }
   `]
 })
-export class StudentDashboardComponent implements OnInit {
+export class StudentDashboardComponent implements OnInit, OnDestroy {
   videos: Video[] = [];
+  // video id -> object URL of its poster
+  thumbnails: { [id: number]: string } = {};
+  nextCursor?: string;
+  loading = false;
 
   constructor(private videoService: VideoService) {}
 
@@ -120,12 +131,39 @@ export class StudentDashboardComponent implements OnInit {
   }
 
   loadVideos(): void {
-    this.videoService.getPublicVideos().subscribe(videos => {
-      this.videos = videos;
+    this.videos = [];
+    this.nextCursor = undefined;
+    this.loadMore();
+  }
+
+  loadMore(): void {
+    this.loading = true;
+    this.videoService.getPublicVideosPage(this.nextCursor).subscribe({
+      next: page => {
+        this.videos = this.videos.concat(page.items);
+        this.loadThumbnails(page.items);
+        this.nextCursor = page.nextCursor;
+        this.loading = false;
+      },
+      error: () => this.loading = false
     });
   }
 
   getStreamUrl(id: number): string {
     return this.videoService.getStreamUrl(id);
   }
+
+  private loadThumbnails(videos: Video[]): void {
+    videos
+      .filter(video => video.thumbnailPath && !this.thumbnails[video.id])
+      .forEach(video => this.videoService.getThumbnail(video.id).subscribe({
+        next: url => this.thumbnails[video.id] = url,
+        // the placeholder stays when the poster cannot be loaded
+        error: () => undefined
+      }));
+  }
+
+  ngOnDestroy(): void {
+    Object.values(this.thumbnails).forEach(url => URL.revokeObjectURL(url));
+  }
 }
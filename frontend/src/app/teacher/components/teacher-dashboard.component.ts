@@ -1,4 +1,4 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { VideoService } from '../../shared/services/video.service';
 import { Video } from '../../shared/models/video.model';
 
@@ -45,8 +45,8 @@ import { Video } from '../../shared/models/video.model';
         <div class="video-grid">
           <div class="video-card" *ngFor="let video of videos">
             <div class="video-thumbnail">
-              <img *ngIf="video.thumbnailPath" [src]="video.thumbnailPath" alt="{{ video.title }}" width="100%" height="200">
-              <div *ngIf="!video.thumbnailPath" class="placeholder-thumbnail"></div>
+              <img *ngIf="thumbnails[video.id]" [src]="thumbnails[video.id]" alt="{{ video.title }}" width="100%" height="200">
+              <div *ngIf="!thumbnails[video.id]" class="placeholder-thumbnail"></div>
             </div>
             <div class="video-info">
               <h4>{{ video.title }}</h4>
@@ -172,8 +172,10 @@ import { Video } from '../../shared/models/video.model';
     }
   `]
 })
-export class TeacherDashboardComponent implements OnInit {
+export class TeacherDashboardComponent implements OnInit, OnDestroy {
   videos: Video[] = [];
+  // video id -> object URL of its poster
+  thumbnails: { [id: number]: string } = {};
   title: string = '';
   description: string = '';
   isPublic: boolean = false;
@@ -190,6 +192,7 @@ export class TeacherDashboardComponent implements OnInit {
   loadVideos(): void {
     this.videoService.getMyVideos().subscribe(videos => {
       this.videos = videos;
+      this.loadThumbnails(videos);
     });
   }
 
@@ -233,4 +236,18 @@ export class TeacherDashboardComponent implements OnInit {
   getStreamUrl(id: number): string {
     return this.videoService.getStreamUrl(id);
   }
+
+  private loadThumbnails(videos: Video[]): void {
+    videos
+      .filter(video => video.thumbnailPath && !this.thumbnails[video.id])
+      .forEach(video => this.videoService.getThumbnail(video.id).subscribe({
+        next: url => this.thumbnails[video.id] = url,
+        // the placeholder stays when the poster cannot be loaded
+        error: () => undefined
+      }));
+  }
+
+  ngOnDestroy(): void {
+    Object.values(this.thumbnails).forEach(url => URL.revokeObjectURL(url));
+  }
 }